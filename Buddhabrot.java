@@ -0,0 +1,209 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class Buddhabrot {
+    // Renders the Buddhabrot, i.e. the density of the orbits of the points that escape the Mandelbrot set, or with --anti the Anti-Buddhabrot, the density of the orbits of the points that do not escape.
+    // Every thread traces its share of the samples into a histogram of its own, and the histograms are only added together once every thread is done, so no two threads ever write to the same counter.
+
+    private static final double SAMPLE_RADIUS = 2.0;
+    // Constant class field for half the sidelength of the square the samples c are drawn from, which contains the entire Mandelbrot set.
+
+    private static final int CELLS = 256;
+    // Constant class field for the number of cells along each side of the grid used for importance sampling.
+
+    private static final int BOUNDARY_MIN = 8;
+    // Constant class field for the fewest iterations a cell must take to count as close to the boundary. Points that escape sooner have short orbits which add little to the image.
+
+    private static final double IMPORTANCE = 0.75;
+    // Constant class field for the fraction of the samples drawn from the cells of interest rather than from the whole square.
+
+    private static final String COLOURS_PATH = "mnd/blues.mnd";
+    // Constant class field acting as the path to the .mnd file used to colour the densities.
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            usage();
+        }
+
+        View view = null;
+        long samples = 0;
+        boolean anti = false;
+        int max = 1000;
+
+        try {
+            for (int i = 6; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--anti": anti = true; break;
+                    case "--max": max = Integer.parseInt(args[++i]); break;
+                    default: usage();
+                }
+            }
+
+            view = new View(new Complex(Double.parseDouble(args[0]), Double.parseDouble(args[1])), Double.parseDouble(args[2]), Integer.parseInt(args[3]), new Kernel.Quadratic(), max);
+            samples = Long.parseLong(args[4]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            usage();
+        }
+
+        long t1 = System.nanoTime();
+        double[] density = render(view, samples, anti);
+        long t2 = System.nanoTime();
+
+        int[] colours = Mandelbrot.getColourTable(Mandelbrot.getColourScheme(COLOURS_PATH), Mandelbrot.MAX);
+        double peak = 0;
+
+        for (double d : density) {
+            peak = Math.max(peak, d);
+        }
+
+        double top = peak;
+        int size = view.getSize();
+
+        PngWriter.write(size, size, (y, row) -> {
+            for (int x = 0; x < size; x++) {
+                double level = top == 0 ? 0 : Math.sqrt(density[y * size + x] / top);
+                row[x] = colours[(int) Math.round(level * Mandelbrot.MAX)];
+            }
+            // The square root brings out the faint orbits next to the dense ones.
+        }, false, PngWriter.DEFAULT, new File(args[5]));
+
+        System.out.println("Traced " + samples + " samples in " + (t2 - t1) / 1000000 + " ms.");
+    }
+
+    public static double[] render (View view, long samples, boolean anti) {
+        // Returns the orbit density of every pixel of < view >, stored row by row, from < samples > random points c.
+
+        int max = view.getMax();
+        Kernel kernel = view.getKernel();
+        double cellSize = 2.0 * SAMPLE_RADIUS / CELLS;
+
+        boolean[] interesting = new boolean[CELLS * CELLS];
+
+        IntStream.range(0, CELLS).parallel().forEach(y -> {
+            for (int x = 0; x < CELLS; x++) {
+                int n = kernel.iterate(-SAMPLE_RADIUS + (x + 0.5) * cellSize, -SAMPLE_RADIUS + (y + 0.5) * cellSize, max);
+                interesting[y * CELLS + x] = anti ? n == max : n >= BOUNDARY_MIN && n < max;
+            }
+        });
+        // A coarse grid marks the cells whose orbits are likely to contribute: cells close to the boundary for the Buddhabrot and cells inside the set for the Anti-Buddhabrot.
+
+        int count = 0;
+
+        for (boolean b : interesting) {
+            count += b ? 1 : 0;
+        }
+
+        int[] cells = new int[count];
+
+        for (int i = 0, j = 0; i < interesting.length; i++) {
+            if (interesting[i]) {
+                cells[j++] = i;
+            }
+        }
+
+        double importance = count == 0 ? 0 : IMPORTANCE;
+        double weightInteresting = 1.0 / ((1 - importance) + importance * CELLS * CELLS / count);
+        double weightOther = 1.0 / (1 - importance);
+        // Each sample is weighted by the uniform density divided by the density it was actually drawn with, such that importance sampling changes the noise but not the image.
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int size = view.getSize();
+        double[][] histograms = new double[threads][];
+        long seed = System.nanoTime();
+
+        IntStream.range(0, threads).parallel().forEach(t -> {
+            double[] histogram = new double[size * size];
+            // Counts are kept as doubles, since adding a weight near 1 to a float stops changing it beyond 2^24, which the bright pixels of a long render pass.
+            SplittableRandom random = new SplittableRandom(seed + t);
+            long share = samples / threads + (t < samples % threads ? 1 : 0);
+
+            for (long s = 0; s < share; s++) {
+                double cr, ci;
+                int cell;
+
+                if (random.nextDouble() < importance) {
+                    cell = cells[random.nextInt(cells.length)];
+                    cr = -SAMPLE_RADIUS + (cell % CELLS + random.nextDouble()) * cellSize;
+                    ci = -SAMPLE_RADIUS + (cell / CELLS + random.nextDouble()) * cellSize;
+                } else {
+                    cr = -SAMPLE_RADIUS + random.nextDouble() * 2.0 * SAMPLE_RADIUS;
+                    ci = -SAMPLE_RADIUS + random.nextDouble() * 2.0 * SAMPLE_RADIUS;
+                    cell = (int) ((ci + SAMPLE_RADIUS) / cellSize) * CELLS + (int) ((cr + SAMPLE_RADIUS) / cellSize);
+                }
+
+                boolean inside = isInCardioidOrBulb(cr, ci);
+                // Points in the main cardioid or the period-2 bulb never escape, so their escape-time loop is skipped.
+
+                if (inside && !anti) {
+                    continue;
+                }
+
+                int n = inside ? max : kernel.iterate(cr, ci, max);
+
+                if (anti ? n < max : n == max) {
+                    continue;
+                }
+
+                double weight = interesting[cell] ? weightInteresting : weightOther;
+                trace(view, cr, ci, n, histogram, weight);
+            }
+
+            histograms[t] = histogram;
+        });
+
+        double[] density = histograms[0];
+
+        IntStream.range(0, size).parallel().forEach(y -> {
+            for (int t = 1; t < threads; t++) {
+                for (int i = y * size; i < (y + 1) * size; i++) {
+                    density[i] += histograms[t][i];
+                }
+            }
+        });
+        // The histograms of the threads are added together row by row in parallel.
+
+        return density;
+    }
+
+    private static void trace (View view, double cr, double ci, int n, double[] histogram, double weight) {
+        // Adds the first < n > points of the orbit of c to < histogram >, which is local to the calling thread.
+
+        double zr = cr, zi = ci;
+        int size = view.getSize();
+        double left = view.re(0), top = view.im(0);
+        double scale = (size - 1) / view.getSidelength();
+
+        for (int i = 0; i < n; i++) {
+            int x = (int) Math.round((zr - left) * scale);
+            int y = (int) Math.round((top - zi) * scale);
+
+            if (x >= 0 && x < size && y >= 0 && y < size) {
+                histogram[y * size + x] += weight;
+            }
+
+            double zr2 = zr * zr, zi2 = zi * zi;
+            zi = 2.0 * zr * zi + ci;
+            zr = zr2 - zi2 + cr;
+        }
+    }
+
+    static boolean isInCardioidOrBulb (double re, double im) {
+        // Returns true if c lies in the main cardioid or the period-2 bulb of the Mandelbrot set.
+
+        double q = (re - 0.25) * (re - 0.25) + im * im;
+
+        if (q * (q + (re - 0.25)) <= 0.25 * im * im) {
+            return true;
+        }
+
+        return (re + 1) * (re + 1) + im * im <= 0.0625;
+    }
+
+    private static void usage () {
+        System.out.println("Error: The Buddhabrot renderer should be called with the arguments: re im sidelength size samples output.png [--anti] [--max iterations]");
+        System.exit(-1);
+    }
+}
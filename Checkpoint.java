@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class Checkpoint implements AutoCloseable {
+    // Persists the progress of a long render in a directory, such that a render that is killed can be resumed where it stopped. The directory holds the parameters of the view, the iteration counts as a memory mapped raster and a log of the finished tiles.
+    // A tile is only appended to the log after its iteration counts have been forced to disk, so every tile in the log is safe to skip after a crash.
+
+    private static final long INTERVAL = 60L * 1000000000L;
+    // Constant class field for the time in nanoseconds between two checkpoints, i.e. the most work lost when a render dies.
+
+    private static final String PARAMETERS = "parameters";
+    private static final String ITERATIONS = "iterations.raw";
+    private static final String TILES = "tiles";
+    // Constant class fields for the names of the files in the checkpoint directory.
+
+    private final OffHeapRaster iterations;
+    private final FileChannel log;
+    private final Set<String> finished;
+    // The mapped iteration counts, the log of finished tiles and the tiles that were finished before the render was resumed.
+
+    private final ConcurrentLinkedQueue<Tile> pending = new ConcurrentLinkedQueue<>();
+    // Class field for the tiles finished since the last checkpoint.
+
+    private long last = System.nanoTime();
+    // Class field for the time of the last checkpoint.
+
+    public Checkpoint (Path directory, View view) throws IOException {
+        // Construct a checkpoint of < view > in < directory >. If the directory holds a checkpoint of the same view, it is resumed, otherwise any previous checkpoint is discarded.
+
+        Files.createDirectories(directory);
+
+        Path parameters = directory.resolve(PARAMETERS);
+        boolean resumed = Files.exists(parameters) && Files.readString(parameters).equals(view.toString());
+        // The render is resumed only if the center, sidelength, size, kernel and maximum all match.
+
+        finished = new HashSet<>();
+
+        if (resumed && Files.exists(directory.resolve(TILES))) {
+            finished.addAll(Files.readAllLines(directory.resolve(TILES)));
+            // A line cut short by a crash matches no tile, so its tile is simply rendered again.
+        } else if (!resumed) {
+            Files.deleteIfExists(parameters);
+            Files.deleteIfExists(directory.resolve(TILES));
+            Files.deleteIfExists(directory.resolve(ITERATIONS));
+        }
+
+        iterations = new OffHeapRaster(view.getSize(), view.getSize(), directory.resolve(ITERATIONS));
+        log = FileChannel.open(directory.resolve(TILES), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        if (!resumed) {
+            Files.writeString(parameters, view.toString());
+            // The parameters are written last, once the raster and the log exist, so a crash while starting leaves a checkpoint that is started afresh rather than one that cannot be resumed.
+        }
+    }
+
+    public OffHeapRaster getIterations() {
+        return iterations;
+    }
+
+    public int getFinished() {
+        // Returns the number of tiles that were finished before the render was resumed.
+        return finished.size();
+    }
+
+    public boolean isFinished (Tile tile) {
+        // Returns true if < tile > was finished before the render was resumed.
+        return finished.contains(tile.toString());
+    }
+
+    public void complete (Tile tile) throws IOException {
+        // Records < tile > as finished once its iteration counts have been written to the raster, and takes a checkpoint if the last one is older than INTERVAL. Called concurrently from the rendering threads.
+
+        pending.add(tile);
+
+        if (System.nanoTime() - last >= INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    public synchronized void checkpoint () throws IOException {
+        // Forces the iteration counts to disk and then appends the tiles finished since the last checkpoint to the log.
+
+        last = System.nanoTime();
+
+        List<Tile> tiles = new ArrayList<>();
+        Tile tile;
+
+        while ((tile = pending.poll()) != null) {
+            tiles.add(tile);
+        }
+
+        if (tiles.isEmpty()) {
+            return;
+        }
+
+        iterations.force();
+
+        StringBuilder lines = new StringBuilder();
+
+        for (Tile t : tiles) {
+            lines.append(t).append('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+
+        log.force(false);
+    }
+
+    @Override
+    public void close () throws IOException {
+        // Takes a final checkpoint and closes the files.
+
+        try {
+            checkpoint();
+        } finally {
+            log.close();
+            iterations.close();
+        }
+    }
+}
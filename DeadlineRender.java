@@ -0,0 +1,148 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+public class DeadlineRender {
+    // Renders a view within a time budget. The view is first rendered at a reduced resolution and iteration limit, and each following pass doubles both until the full view is reached or the budget runs out. The best finished pass is returned together with the fidelity it reached.
+
+    private static final int MIN_SIZE = 32;
+    private static final int MIN_MAX = 32;
+    // Constant class fields for the resolution and iteration limit of the first pass. The first pass is always finished, even past the deadline, so the result is never empty.
+
+    public static class Result {
+        // The image of the best finished pass, with the resolution and iteration limit it was rendered at.
+
+        private final BufferedImage image;
+        private final int size, max;
+        private final boolean complete;
+
+        Result (BufferedImage image, int size, int max, boolean complete) {
+            this.image = image;
+            this.size = size;
+            this.max = max;
+            this.complete = complete;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        public boolean isComplete() {
+            // Returns true if the full view was rendered within the budget.
+            return complete;
+        }
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6 && args.length != 7 && args.length != 8) {
+            System.out.println("Error: The deadline renderer should be called with the arguments: re im sidelength size budget_ms output.png [kernel] [palette]");
+            System.exit(-1);
+        }
+
+        View view = null;
+        long budget = 0;
+
+        try {
+            Kernel kernel = args.length > 6 ? Kernel.parse(args[6]) : new Kernel.Quadratic();
+            view = new View(new Complex(Double.parseDouble(args[0]), Double.parseDouble(args[1])), Double.parseDouble(args[2]), Integer.parseInt(args[3]), kernel, Mandelbrot.MAX);
+            budget = Long.parseLong(args[4]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        Color[] colourScheme = Mandelbrot.getColourScheme("mnd/" + (args.length > 7 ? args[7] : "volcano") + ".mnd");
+
+        long t1 = System.nanoTime();
+        Result result = render(view, colourScheme, budget);
+        long t2 = System.nanoTime();
+
+        BufferedImage image = new BufferedImage(view.getSize(), view.getSize(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        graphics.drawImage(result.getImage(), 0, 0, view.getSize(), view.getSize(), null);
+        graphics.dispose();
+        // The finished pass is scaled up to the requested size.
+
+        PngWriter.write(image, new File(args[5]), PngWriter.FAST);
+
+        System.out.println("Reached " + result.getSize() + " x " + result.getSize() + " pixels at " + result.getMax() + " iterations" + (result.isComplete() ? " (complete)" : "") + " in " + (t2 - t1) / 1000000 + " ms.");
+    }
+
+    public static Result render (View view, Color[] colourScheme, long budgetMillis) {
+        // Returns the best pass of < view > finished within < budgetMillis > milliseconds.
+
+        long deadline = System.nanoTime() + budgetMillis * 1000000;
+        Result best = null;
+
+        int size = Math.min(view.getSize(), MIN_SIZE);
+        int max = Math.min(view.getMax(), MIN_MAX);
+
+        while (true) {
+            View pass = new View(view.getCenter(), view.getSidelength(), size, view.getKernel(), max);
+            boolean complete = size == view.getSize() && max == view.getMax();
+
+            int[] pixels = iterate(pass, best == null ? Long.MAX_VALUE : deadline);
+
+            if (pixels == null) {
+                return best;
+                // The deadline passed during this pass, so the previous pass is the best one.
+            }
+
+            int[] colourTable = Mandelbrot.getColourTable(colourScheme, max);
+
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = colourTable[pixels[i]];
+            }
+
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, size, size, pixels, 0, size);
+            best = new Result(image, size, max, complete);
+
+            if (complete || System.nanoTime() >= deadline) {
+                return best;
+            }
+
+            size = (int) Math.min(view.getSize(), 2L * size);
+            max = (int) Math.min(view.getMax(), 2L * max);
+        }
+    }
+
+    private static int[] iterate (View view, long deadline) {
+        // Returns the iteration counts of the entire view, row by row, or null if the deadline passed before every tile was done.
+
+        int size = view.getSize();
+        int[] iterations = new int[size * size];
+        int[] mirrors = view.mirrors();
+        boolean complete = TileScheduler.render(view, mirrors, () -> System.nanoTime() >= deadline, (tile, values) -> {
+            for (int y = 0; y < tile.getHeight(); y++) {
+                System.arraycopy(values, y * tile.getWidth(), iterations, (tile.getY() + y) * size + tile.getX(), tile.getWidth());
+            }
+        });
+        // Once the deadline has passed, the remaining tiles are skipped.
+
+        if (!complete) {
+            return null;
+        }
+
+        for (int y = 0; y < size; y++) {
+            if (mirrors[y] >= 0) {
+                System.arraycopy(iterations, mirrors[y] * size, iterations, y * size, size);
+            }
+        }
+
+        return iterations;
+    }
+}
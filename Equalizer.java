@@ -0,0 +1,59 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class Equalizer {
+    // Histogram-equalised colouring. Instead of giving every colour of the scheme an equal range of iteration counts, as Mandelbrot.getIterationColour() does, every colour is given an equal share of the escaping pixels, such that the whole scheme is used no matter which iteration counts occur in the view.
+    // The histogram is counted by every thread into counters of its own, the cumulative distribution is a parallel prefix sum and the pixels are then coloured through a colour table in parallel, so equalising costs a few passes over the iteration counts.
+
+
+    public static long[] histogram (OffHeapRaster iterations, int max) {
+        // Returns the number of pixels in < iterations > with each iteration count from 0 to < max >.
+
+        int width = iterations.getWidth();
+
+        return IntStream.range(0, iterations.getHeight()).parallel().collect(() -> new long[max + 1], (histogram, y) -> {
+            int[] row = new int[width];
+            iterations.read(y, row);
+
+            for (int n : row) {
+                histogram[n]++;
+            }
+        }, (a, b) -> {
+            for (int n = 0; n <= max; n++) {
+                a[n] += b[n];
+            }
+        });
+        // Each thread of the stream counts its rows into a histogram of its own, and the histograms are added together as the threads finish.
+    }
+
+    public static int[] getColourTable (long[] histogram, Color[] CS) {
+        // Returns the RGB colour of every iteration count, from 0 to the last index of < histogram >, equalised over < histogram >. Pixels that never escape get the last colour of < CS >, as in Mandelbrot.getIterationColour().
+
+        int max = histogram.length - 1;
+        long[] cumulative = Arrays.copyOf(histogram, max);
+        Arrays.parallelPrefix(cumulative, Long::sum);
+        // cumulative[n] is the number of escaping pixels with at most n iterations.
+
+        long escaped = max == 0 ? 0 : cumulative[max - 1];
+        int[] table = new int[max + 1];
+
+        IntStream.rangeClosed(0, max).parallel().forEach(n -> {
+            if (n == max || escaped == 0) {
+                table[n] = CS[CS.length - 1].getRGB();
+                return;
+            }
+
+            int index = (int) ((double) (cumulative[n] - histogram[n]) / escaped * (CS.length - 1));
+            table[n] = CS[Math.max(0, Math.min(index, CS.length - 2))].getRGB();
+            // The colour is chosen by the share of escaping pixels with fewer iterations, so the last colour is left for the pixels inside the set. A scheme of a single colour colours every pixel with it.
+        });
+
+        return table;
+    }
+
+    public static int[] getColourTable (OffHeapRaster iterations, Color[] CS, int max) {
+        // Returns the colour table of < iterations > equalised over its own histogram.
+        return getColourTable(histogram(iterations, max), CS);
+    }
+}
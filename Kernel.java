@@ -0,0 +1,353 @@
+public interface Kernel {
+    // A fractal kernel is the escape-time loop for a single fractal family. Each implementation is a specialised loop over primitive doubles, such that no Complex objects are allocated while iterating.
+
+    int iterate (double re, double im, int max);
+    // Returns the number of iterations before the orbit of the point (re, im) escapes the circle of radius 2, or < max > if it never does.
+
+    default void iterate (double[] re, double im, int max, int[] iterations, int offset) {
+        // Writes the iteration count of every point (re[i], im) of a row to iterations[offset + i]. Kernels may override this to iterate several points of the row at once.
+
+        for (int i = 0; i < re.length; i++) {
+            iterations[offset + i] = iterate(re[i], im, max);
+        }
+    }
+
+    default boolean isConjugateSymmetric () {
+        // Returns true if the point (re, -im) always gives the same number of iterations as (re, im), i.e. if the fractal is symmetric about the real axis.
+        return false;
+    }
+
+    static Kernel parse (String spec) {
+        // Returns the kernel described by < spec >, which is on the form "mandelbrot", "multibrot:<power>", "julia:<re>:<im>" or "burningship".
+
+        String[] parts = spec.trim().toLowerCase().split(":");
+        // The name of the kernel is split from its parameters at each colon.
+
+        try {
+            switch (parts[0]) {
+                case "mandelbrot":
+                    if (parts.length == 1) return new Quadratic();
+                    break;
+
+                case "multibrot":
+                    if (parts.length == 2) return multibrot(Integer.parseInt(parts[1]));
+                    break;
+
+                case "julia":
+                    if (parts.length == 3) return new Julia(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    break;
+
+                case "burningship":
+                    if (parts.length == 1) return new BurningShip();
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid kernel parameters in \"" + spec + "\".");
+        }
+
+        throw new IllegalArgumentException("Unknown kernel \"" + spec + "\".");
+        // Any name or number of parameters not matched above is not a valid kernel.
+    }
+
+    static Kernel multibrot (int power) {
+        // Returns the specialised kernel for z = z^power + z0, falling back to the general integer power loop for powers above 4.
+
+        switch (power) {
+            case 2: return new Quadratic();
+            case 3: return new Cubic();
+            case 4: return new Quartic();
+        }
+
+        if (power < 2) {
+            throw new IllegalArgumentException("The multibrot power must be at least 2.");
+        }
+
+        return new Multibrot(power);
+    }
+
+
+    final class Quadratic implements Kernel {
+        // The classic Mandelbrot set, z = z^2 + z0.
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+            // The orbit starts at the point itself, as in Mandelbrot.iterate.
+
+            for (int i = 0; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+                // The squares are computed once and used both for the escape test and the next step.
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                    // |z| > 2 is tested as |z|^2 > 4 to avoid the square root.
+                }
+
+                zi = 2.0 * zr * zi + im;
+                zr = zr2 - zi2 + re;
+            }
+
+            return max;
+        }
+
+        @Override
+        public void iterate (double[] re, double im, int max, int[] iterations, int offset) {
+            // Iterates the points of the row two at a time. Every step of an orbit depends on the step before it, so a single orbit keeps the processor waiting for each multiplication, while two independent orbits interleaved in the same loop run in nearly the same time as one.
+            // The arithmetic of each orbit is exactly that of iterate(double, double, int), so the iteration counts are identical.
+
+            int n = 0;
+
+            for (; n + 1 < re.length; n += 2) {
+                double r0 = re[n], r1 = re[n + 1];
+                double zr0 = r0, zi0 = im, zr1 = r1, zi1 = im;
+                int i = 0;
+
+                for (; i < max; i++) {
+                    double zr02 = zr0 * zr0, zi02 = zi0 * zi0;
+                    double zr12 = zr1 * zr1, zi12 = zi1 * zi1;
+                    boolean escaped0 = zr02 + zi02 > 4.0;
+                    boolean escaped1 = zr12 + zi12 > 4.0;
+
+                    if (escaped0 || escaped1) {
+                        iterations[offset + n] = escaped0 ? i : resume(zr0, zi0, r0, im, i, max);
+                        iterations[offset + n + 1] = escaped1 ? i : resume(zr1, zi1, r1, im, i, max);
+                        break;
+                        // Once one orbit escapes, the other one is finished on its own.
+                    }
+
+                    zi0 = 2.0 * zr0 * zi0 + im;
+                    zr0 = zr02 - zi02 + r0;
+                    zi1 = 2.0 * zr1 * zi1 + im;
+                    zr1 = zr12 - zi12 + r1;
+                }
+
+                if (i == max) {
+                    iterations[offset + n] = max;
+                    iterations[offset + n + 1] = max;
+                }
+            }
+
+            if (n < re.length) {
+                iterations[offset + n] = iterate(re[n], im, max);
+                // A row of odd length ends with a single point.
+            }
+        }
+
+        private static int resume (double zr, double zi, double re, double im, int i, int max) {
+            // Continues the orbit of (re, im) from z = zr + zi i at iteration < i >.
+
+            for (; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                }
+
+                zi = 2.0 * zr * zi + im;
+                zr = zr2 - zi2 + re;
+            }
+
+            return max;
+        }
+
+        @Override
+        public boolean isConjugateSymmetric () {
+            return true;
+        }
+
+        @Override
+        public String toString () {
+            return "mandelbrot";
+        }
+    }
+
+    final class Cubic implements Kernel {
+        // The multibrot set of power 3, z = z^3 + z0, with z^3 expanded into multiplications.
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+
+            for (int i = 0; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                }
+
+                double nr = zr * (zr2 - 3.0 * zi2) + re;
+                zi = zi * (3.0 * zr2 - zi2) + im;
+                zr = nr;
+                // (a + b i)^3 = a (a^2 - 3 b^2) + b (3 a^2 - b^2) i.
+            }
+
+            return max;
+        }
+
+        @Override
+        public boolean isConjugateSymmetric () {
+            return true;
+        }
+
+        @Override
+        public String toString () {
+            return "multibrot:3";
+        }
+    }
+
+    final class Quartic implements Kernel {
+        // The multibrot set of power 4, z = z^4 + z0, computed as the square of the square.
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+
+            for (int i = 0; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                }
+
+                double sr = zr2 - zi2;
+                double si = 2.0 * zr * zi;
+                // s = z^2.
+
+                zr = sr * sr - si * si + re;
+                zi = 2.0 * sr * si + im;
+                // z^4 = s^2.
+            }
+
+            return max;
+        }
+
+        @Override
+        public boolean isConjugateSymmetric () {
+            return true;
+        }
+
+        @Override
+        public String toString () {
+            return "multibrot:4";
+        }
+    }
+
+    final class Multibrot implements Kernel {
+        // The multibrot set of any integer power, z = z^power + z0, using exponentiation by squaring on primitive doubles.
+
+        private final int power;
+
+        public Multibrot (int power) {
+            this.power = power;
+        }
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+
+            for (int i = 0; i < max; i++) {
+                if (zr * zr + zi * zi > 4.0) {
+                    return i;
+                }
+
+                double pr = 1.0, pi = 0.0;
+                double br = zr, bi = zi;
+                // < p > accumulates the power while < b > runs through z, z^2, z^4, ...
+
+                for (int e = power; e > 0; e >>= 1) {
+                    if ((e & 1) != 0) {
+                        double t = pr * br - pi * bi;
+                        pi = pr * bi + pi * br;
+                        pr = t;
+                    }
+
+                    double t = br * br - bi * bi;
+                    bi = 2.0 * br * bi;
+                    br = t;
+                }
+
+                zr = pr + re;
+                zi = pi + im;
+            }
+
+            return max;
+        }
+
+        @Override
+        public boolean isConjugateSymmetric () {
+            return true;
+        }
+
+        @Override
+        public String toString () {
+            return "multibrot:" + power;
+        }
+    }
+
+    final class Julia implements Kernel {
+        // The Julia set of the fixed complex number c, z = z^2 + c, where the orbit starts at the point itself.
+
+        private final double cr, ci;
+
+        public Julia (double cr, double ci) {
+            this.cr = cr;
+            this.ci = ci;
+        }
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+
+            for (int i = 0; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                }
+
+                zi = 2.0 * zr * zi + ci;
+                zr = zr2 - zi2 + cr;
+            }
+
+            return max;
+        }
+
+        @Override
+        public boolean isConjugateSymmetric () {
+            return ci == 0.0;
+            // Only a real c gives a Julia set which is symmetric about the real axis.
+        }
+
+        @Override
+        public String toString () {
+            return "julia:" + cr + ":" + ci;
+        }
+    }
+
+    final class BurningShip implements Kernel {
+        // The Burning Ship fractal, z = (|Re(z)| + |Im(z)| i)^2 + z0.
+
+        @Override
+        public int iterate (double re, double im, int max) {
+            double zr = re, zi = im;
+
+            for (int i = 0; i < max; i++) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+
+                if (zr2 + zi2 > 4.0) {
+                    return i;
+                }
+
+                zi = Math.abs(2.0 * zr * zi) + im;
+                zr = zr2 - zi2 + re;
+            }
+
+            return max;
+        }
+
+        @Override
+        public String toString () {
+            return "burningship";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+public class LiveDisplay {
+    // Shows the tiles of a render on the StdDraw canvas while the render is running. Render threads only add their finished tiles to a lock-free queue and never wait for the screen, while a timer on the Swing event thread takes every tile queued since the last frame and copies them onto the canvas at most FRAME_RATE times per second.
+    // StdDraw is not thread-safe, so all drawing happens on the event thread.
+
+    private static final int FRAME_RATE = 60;
+    // Constant class field for the maximum number of frames drawn per second.
+
+    private static final String COLOURS_DIR = "mnd/";
+    // Constant class field for the directory containing the .mnd colour schemes.
+
+    private final ConcurrentLinkedQueue<Update> queue = new ConcurrentLinkedQueue<>();
+    // Class field for the tiles published but not yet drawn.
+
+    private final Timer timer;
+    private volatile boolean finished = false;
+    // The timer drawing the frames on the event thread, and whether the last tile has been published.
+
+    private static class Update {
+        // The ARGB pixels of a finished tile, stored row by row.
+
+        private final Tile tile;
+        private final int[] pixels;
+
+        Update (Tile tile, int[] pixels) {
+            this.tile = tile;
+            this.pixels = pixels;
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4 || args.length > 6) {
+            System.out.println("Error: The live display should be called with the arguments: re im sidelength size [kernel] [palette]");
+            System.exit(-1);
+        }
+
+        View view = null;
+
+        try {
+            Kernel kernel = args.length > 4 ? Kernel.parse(args[4]) : new Kernel.Quadratic();
+            view = new View(new Complex(Double.parseDouble(args[0]), Double.parseDouble(args[1])), Double.parseDouble(args[2]), Integer.parseInt(args[3]), kernel, Mandelbrot.MAX);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        int size = view.getSize();
+        Color[] colourScheme = Mandelbrot.getColourScheme(COLOURS_DIR + (args.length > 5 ? args[5] : "volcano") + ".mnd");
+        int[] colourTable = Mandelbrot.getColourTable(colourScheme, view.getMax());
+
+        SwingUtilities.invokeAndWait(() -> StdDraw.setCanvasSize(size, size));
+
+        LiveDisplay display = new LiveDisplay();
+
+        int[] mirrors = new int[size];
+        Arrays.fill(mirrors, -1);
+        // Every row is computed, so every tile is complete when it is shown.
+
+        long t1 = System.nanoTime();
+
+        TileScheduler.render(view, mirrors, () -> false, (tile, values) -> {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = colourTable[values[i]];
+            }
+
+            display.publish(tile, values);
+        });
+
+        long t2 = System.nanoTime();
+        display.finish();
+
+        System.out.println("Rendered " + view + " in " + (t2 - t1) / 1000000 + " ms.");
+    }
+
+    public LiveDisplay () {
+        // Construct a display drawing onto the StdDraw canvas, and start its timer.
+
+        timer = new Timer(1000 / FRAME_RATE, event -> drawFrame());
+        timer.setCoalesce(true);
+        // A frame that takes longer than the interval delays the next one instead of letting timer events pile up.
+
+        timer.start();
+    }
+
+    public void publish (Tile tile, int[] pixels) {
+        // Queues the ARGB < pixels > of < tile > for the next frame. Safe to call from any thread, and never blocks.
+        queue.add(new Update(tile, pixels));
+    }
+
+    public void finish () {
+        // Marks the render as done, such that the timer stops once the remaining tiles are drawn.
+        finished = true;
+    }
+
+    private void drawFrame () {
+        // Draws every tile queued since the last frame. Runs on the event thread.
+
+        boolean last = finished;
+        // Read before the queue is emptied, so a tile published just before finish() is never left behind.
+
+        Update update;
+
+        while ((update = queue.poll()) != null) {
+            Tile tile = update.tile;
+            StdDraw.pixels(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), update.pixels);
+            // Each tile only repaints its own rectangle, and Swing merges the repaints of a frame into one.
+        }
+
+        if (last) {
+            timer.stop();
+        }
+    }
+}
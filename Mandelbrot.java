@@ -1,11 +1,12 @@
 import java.awt.Color;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
-import java.util.Scanner;
 
 public class Mandelbrot {
-    private static final int MAX = 255;
+    static final int MAX = 255;
     // Constant class field to determine how many itterations each point should make, higher value = higher accuracy and longer process time.
 
     private static final int GRIDSIZE = 512;
@@ -22,8 +23,11 @@ public class Mandelbrot {
     private static Complex center;
     // Class field for the center-point of the fractal in the complex number plane.
 
-    private static Complex[][] grid = new Complex[GRIDSIZE][GRIDSIZE];
-    // Class field for the twodimensional grid of complex numbers found within the < sidelength > by < sidelength > matrix.
+    private static Viewport viewport;
+    // Class field for the coordinates of the rows and columns of the < sidelength > by < sidelength > matrix, see Viewport.java.
+
+    private static Kernel kernel = new Kernel.Quadratic();
+    // Class field for the fractal kernel iterateGrid() iterates the rows of the viewport with, by default the Mandelbrot set itself.
 
 
     public static void main(String[] args) throws FileNotFoundException {
@@ -34,8 +38,8 @@ public class Mandelbrot {
 
 
 
-        if (args.length != 3) {
-            System.out.println("Error: The program should be called with 3 numeric values.");
+        if (args.length != 3 && args.length != 4) {
+            System.out.println("Error: The program should be called with 3 numeric values and an optional kernel.");
             // Print an error message if the program is called with a wrong amount of arguments.
 
             System.exit(-1);
@@ -45,8 +49,8 @@ public class Mandelbrot {
         double[] args_double = new double[3];
         // Declare an array < args_double > with dimension 3.
         try {
-            args_double = Arrays.stream(args).mapToDouble(Double::parseDouble).toArray();
-            // Convert type String[] args to type double[] args_double.
+            args_double = Arrays.stream(args, 0, 3).mapToDouble(Double::parseDouble).toArray();
+            // Convert the first three elements of type String[] args to type double[] args_double.
 
         } catch (Exception e) {
             System.out.println("Error: The program should be called with 3 numeric values.");
@@ -72,16 +76,30 @@ public class Mandelbrot {
         sidelength = args_double[2];
         // Define a sidelength to generate the fractal.
 
+        if (args.length == 4) {
+            try {
+                kernel = Kernel.parse(args[3]);
+                // Select the fractal kernel from the optional fourth argument, e.g. "julia:-0.8:0.156" or "multibrot:3".
+
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: " + e.getMessage());
+                // Print an error message if the kernel is unknown or its parameters are invalid.
+
+                System.exit(-1);
+                // Exit the program with code -1.
+            }
+        }
+
         StdDraw.setXscale(0, GRIDSIZE);
         StdDraw.setYscale(0, GRIDSIZE);
         StdDraw.setPenRadius(0.8/(double)GRIDSIZE);
         // Set dimensions and pen radius for the stdDraw library for use in visually representing the grid.
 
-        grid = determineMatrixCoordinates();
-        // Determine the grid using the determineMatrixCoordinates() method.
+        viewport = new Viewport(center, sidelength, GRIDSIZE, GRIDSIZE);
+        // Determine the coordinates of the GRIDSIZE rows and GRIDSIZE columns, instead of a complex number for every point.
 
-        draw(grid);
-        // Draw the points of the matrix which fall within the mandelbrot set, determined using the iterate() method.
+        draw(viewport);
+        // Draw the points of the matrix which fall within the mandelbrot set, determined by the kernel.
 
         
 
@@ -90,56 +108,61 @@ public class Mandelbrot {
         //System.out.println("Execution time: " + (t2 - t1) / 1000000 + "ms");
     }
 
-    private static Complex[][] determineMatrixCoordinates () {
-        Complex[][] coordinates = new Complex[GRIDSIZE][GRIDSIZE];
-        // Define a dummy grid < coordinates > of size GRIDSIZE * GRIDSIZE to write to.
+    private static void draw (Viewport V) throws FileNotFoundException {
+        StdDraw.clear();
+        // Clear any preexisting objects on the StdDraw canvas.
 
-        for (int x = 0; x < GRIDSIZE; x++) {
-            for (int y = 0; y < GRIDSIZE; y++) {
-                // Iterate (x, y) over a twodimensional plane of size GRIDSIZE * GRIDSIZE. 
+        Color[] colourScheme = getColourScheme(COLOURS_PATH);
+        // The colour scheme is defined as the return value of the getColourScheme method with the path of the .mnd file as the argument.
 
-                double x0 = center.getRe() - (double) sidelength / 2.0 + (double) (sidelength * x) / ((double) GRIDSIZE - 1);
-                double y0 = center.getIm() - (double) sidelength / 2.0 + (double) (sidelength * y) / ((double) GRIDSIZE - 1);
-                // Using the expression as described in the documentation, the coordinates (x0 and y0) of the specific (x, y) point are determined.
-                
-                coordinates[x][y] = new Complex(x0, y0);
-                // Write the value of the calculated coordinates to the grid as a complex number object.
-            }
+        int[] pixels = iterateGrid(V);
+        // The iteration counts of the entire grid are determined before anything is drawn, row by row from the top like the rows of the canvas.
+
+        int[] colourTable = getColourTable(colourScheme, MAX);
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = colourTable[pixels[i]];
+            // The colour of every iteration count is looked up once, and the counts are replaced by their ARGB colours in place.
         }
 
-        return coordinates;
-        // Return the new rewritten dummy variable < coordinates >.
+        StdDraw.pixels(0, 0, V.getWidth(), V.getHeight(), pixels);
+        // The whole frame is copied onto the canvas at once and repainted a single time, instead of drawing and repainting every point separately.
     }
 
-    private static void draw (Complex[][] G) throws FileNotFoundException {
-        StdDraw.clear();
-        // Clear any preexisting objects on the StdDraw canvas.
+    private static int[] iterateGrid (Viewport V) {
+        // Returns the iteration count of every point of < V >, stored row by row from the top.
 
-        Color[] colourScheme = getColourScheme(COLOURS_PATH);
-        // The colour scheme is defined as the return value of the getColourScheme method with the path of the .mnd file as the argument.
+        int width = V.getWidth(), height = V.getHeight();
+        double[] res = V.res(0, width);
+        // Every row of the grid has the same real coefficients.
 
-        StdDraw.show(0);
-        // The code to render out the points is wrapped around two "StdDraw.show(0)" commands, which makes the StdDraw library render it all out before showing anything visually - then showing all the rendered points at once.
+        int[] mirrors = View.mirrors(V.ims(), kernel, 1e-6 * V.getSpacing());
+        // If the grid straddles the real axis, the rows on the smaller side whose imaginary coefficient is the negation of a row on the larger side, up to rounding, are mirrored, see View.mirrors().
 
-        for (int x = 0; x < GRIDSIZE; x++) {
-            for (int y = 0; y < GRIDSIZE; y++) {
-                StdDraw.setPenColor(getCoordinateColour(colourScheme, G[x][y]));
-                StdDraw.point(x, y);
+        int[] iterations = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            if (mirrors[y] < 0) {
+                kernel.iterate(res, V.im(y), MAX, iterations, y * width);
+                // The kernel iterates the whole row at once, see Kernel.iterate(double[], double, int, int[], int).
             }
         }
 
-        StdDraw.show(0);
-        // Ending wrapper-command around the code to show the final render.
+        for (int y = 0; y < height; y++) {
+            if (mirrors[y] >= 0) {
+                System.arraycopy(iterations, mirrors[y] * width, iterations, y * width, width);
+                // The conjugate of a point has the same iteration count, so the mirrored rows are copied instead of computed.
+            }
+        }
+
+        return iterations;
     }
 
-    private static Color getCoordinateColour (Color[] CS, Complex C) {
+    static Color getIterationColour (Color[] CS, int iteratorValue, int max) {
         // *CS = Colour Scheme
 
-        double range = (double) (MAX) / (double) CS.length;
-        // Determine a value range, equal to the ratio between the value MAX and the number of entires in the colour scheme.
-
-        int iteratorValue = iterate(C);
-        // Determine if C lies within the fractal using the iterate method, the numeric return value is used to colour the points based on how close algorithmically they are to being inside the fractal (the bigger the return value - the closer the point lies).
+        double range = (double) (max) / (double) CS.length;
+        // Determine a value range, equal to the ratio between the value max and the number of entires in the colour scheme.
 
         for (int i = 1; i < CS.length; i++) {
             // For loop with iterator ranging from 1 to the index of the last colour in the colour scheme.
@@ -151,10 +174,22 @@ public class Mandelbrot {
         }
 
         return CS[CS.length - 1];
-        // Due to the subtraction of the iterator by 1, i * range may never exceede iteratorValue in cases where MAX is returned from the iterate() method. To fix this issue, the last element in the colour scheme is returned, if the iteratorValue exceeds (CS.length - 1) * range.
+        // Due to the subtraction of the iterator by 1, i * range may never exceede iteratorValue in cases where the point never escapes and iteratorValue equals max. To fix this issue, the last element in the colour scheme is returned, if the iteratorValue exceeds (CS.length - 1) * range.
+    }
+
+    static int[] getColourTable (Color[] CS, int max) {
+        // Returns the RGB value of the colour for every possible iteration count from 0 to < max >, such that renderers can colour a pixel with a single array lookup.
+
+        int[] table = new int[max + 1];
+
+        for (int i = 0; i <= max; i++) {
+            table[i] = getIterationColour(CS, i, max).getRGB();
+        }
+
+        return table;
     }
  
-    private static Color[] getColourScheme (String path) throws FileNotFoundException {
+    static Color[] getColourScheme (String path) throws FileNotFoundException {
         if (path.length() == 0) {
             // Test if the path argument is empty.
 
@@ -184,81 +219,22 @@ public class Mandelbrot {
             System.exit(-1);
         }
 
-        Scanner input = new Scanner(origin);
-        // A Scanner object < input > is instantiated using the origin file.
-
-        int fileLength = 0;
-        Scanner lineCounter = new Scanner(origin);
-        // An integer < fileLength > is declared and set equal to 0, and a new Scanner object < lineCounter > is instantiated with the same arguments as < input >. These two are used to count the number of lines in the .mnd file, such that the colour palette array can be declared using the correct dimensions.
-
-        while (lineCounter.hasNext()) {
-            fileLength += lineCounter.nextLine().length() != 0 ? 1 : 0;
-            // The integer fileLength is iterated by 1, each time there is a non-empty line in the .mnd file.
-        }
-
-        lineCounter.close();
-        // The < lineCounter > Scanner is closed to avoid any potential resource leaks.
-
-        Color[] colours = new Color[fileLength];
-        // The colour palette is declared as a array using fileLength (the no. of lines in the .mnd file) as the dimension.
-
-        for (int i = 0; i < fileLength; i++) {
-            // For an index i spanning from 0 to fileLength, i.e. for each line in the origin file.
-
-            String[] rawLine = input.nextLine().split(" ");
-            // Set a string array < rawLine > as the line in the < input > scanner split at each whitespace.
-
-            String[] rgbValues = new String[3];
-            // Declare a new string array with dimension 3, i.e. 3 indices (R, G and B).
-
-            int iterator = 0;
-            // Set an iterator equal to 0 to determine which index in < rgbValues > to write to.
-
-            for (String s : rawLine) {
-                // For each string < s > in the rawLine string array.
-
-                if (!"".equals(s) && iterator < 3) {
-                    // If < s > is not an empty string it should be ignored, likewise if the iterator is above 2, the program will have already written 3 colour values to < rgbValues >, and as such < s > should be ignored.
+        Color[] colours;
 
-                    rgbValues[iterator] = s;
-                    // If the case passes the if-statement, < s > must be a numeric value from the .mnd file, which should range from 0 to 255. It is added to the rgbValues array at index < iterator >.
+        try {
+            colours = PaletteRegistry.parse(Files.readAllBytes(origin.toPath()));
+            // The whole file is read at once and parsed in a single pass over its bytes, see PaletteRegistry.parse().
 
-                    iterator ++;
-                    // The iterator is iterated :)
-                }
-            }
-            
-            int[] rgbInt = Arrays.stream(rgbValues).mapToInt(Integer::parseInt).toArray();
-            // Type String[] rgbValues is converted to type int[] rgbInt.
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: Colour scheme for path \"" + origin.getAbsolutePath() + "\" could not be read: " + e.getMessage());
+            // Print an error message if the file could not be read or is not a valid colour scheme.
 
-            colours[i] = new Color(rgbInt[0], rgbInt[1], rgbInt[2]);
-            // The colour at index < i > in the colour scheme array is set equal to a colour object declared using the fetched RGB values.
+            System.exit(-1);
+            return null;
+            // Exit the program with code -1.
         }
 
-        input.close();
-        // The < input > Scanner is closed to avoid any potential resource leaks.
-
         return colours;
-        // The dummy colour scheme array < colours > is returned. 
-    }
-
-    private static int iterate (Complex z0) {
-        Complex z = new Complex(z0);
-        // Clone the complex number argument z0 and store it in the variable z.
-
-        for (int i = 0; i < MAX; i++) {
-        // Iterate for i going from 0 to the class field MAX. 
-
-            if (z.abs() > 2.0) {
-                return i;
-                // If the absolute value of the complex number, i.e. the distance between z0 and the origin (0, 0) is greater than 2, the function returns the current number of iterations.
-            }
-
-            z = z.times(z).plus(z0);
-            // Otherwise the number z is set equal to z^2 plus the original argument z0.
-        }
-
-        return MAX;
-        // If the absolute value never exceeds 2.0, the loop will have been iterated MAX times, and as MAX is returned.
+        // The colour scheme array < colours > is returned. 
     }
 }
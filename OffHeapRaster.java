@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class OffHeapRaster implements AutoCloseable {
+    // A width by height raster of int values, e.g. iteration counts or RGB colours, stored outside the Java heap. The values are indexed by a long, so a raster may hold more than 2^31 values, and the garbage collector never has to scan or move it.
+
+    private final int width, height;
+    private final Arena arena;
+    private final MemorySegment segment;
+
+    public OffHeapRaster (int width, int height) {
+        // Construct a raster in native memory, which is released when the raster is closed.
+        this.width = width;
+        this.height = height;
+        this.arena = Arena.ofShared();
+        this.segment = arena.allocate(ValueLayout.JAVA_INT.byteSize() * width * height, ValueLayout.JAVA_INT.byteAlignment());
+    }
+
+    public OffHeapRaster (int width, int height, Path file) throws IOException {
+        // Construct a raster memory mapped onto < file >, such that the operating system can page it out to disk. The file is created or resized as needed and keeps its contents when the raster is closed.
+        this.width = width;
+        this.height = height;
+        this.arena = Arena.ofShared();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, ValueLayout.JAVA_INT.byteSize() * width * height, arena);
+        }
+        // The mapping stays valid after the channel is closed, until the arena is closed.
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int get (int x, int y) {
+        // Returns the value of the pixel (x, y).
+        return segment.getAtIndex(ValueLayout.JAVA_INT, (long) y * width + x);
+    }
+
+    public void set (int x, int y, int value) {
+        // Sets the value of the pixel (x, y).
+        segment.setAtIndex(ValueLayout.JAVA_INT, (long) y * width + x, value);
+    }
+
+    public void write (Tile tile, int[] values) {
+        // Copies the values of < tile >, stored row by row as returned by View.iterate(Tile), into the raster. Tiles are disjoint, so render threads may write their tiles concurrently.
+
+        for (int y = 0; y < tile.getHeight(); y++) {
+            long offset = ((long) (tile.getY() + y) * width + tile.getX()) * ValueLayout.JAVA_INT.byteSize();
+            MemorySegment.copy(values, y * tile.getWidth(), segment, ValueLayout.JAVA_INT, offset, tile.getWidth());
+        }
+    }
+
+    public int[] read (Tile tile) {
+        // Returns the values of < tile >, stored row by row like the values passed to write(Tile, int[]).
+
+        int[] values = new int[tile.getWidth() * tile.getHeight()];
+
+        for (int y = 0; y < tile.getHeight(); y++) {
+            long offset = ((long) (tile.getY() + y) * width + tile.getX()) * ValueLayout.JAVA_INT.byteSize();
+            MemorySegment.copy(segment, ValueLayout.JAVA_INT, offset, values, y * tile.getWidth(), tile.getWidth());
+        }
+
+        return values;
+    }
+
+    public void read (int y, int[] row) {
+        // Copies the row < y > of the raster into < row >.
+
+        long offset = (long) y * width * ValueLayout.JAVA_INT.byteSize();
+        MemorySegment.copy(segment, ValueLayout.JAVA_INT, offset, row, 0, width);
+    }
+
+    public void copyRow (int from, int to) {
+        // Copies the row < from > of the raster onto the row < to >.
+
+        long bytes = (long) width * ValueLayout.JAVA_INT.byteSize();
+        MemorySegment.copy(segment, from * bytes, segment, to * bytes, bytes);
+    }
+
+    public void shift (int dx, int dy) {
+        // Moves the contents of the raster by < dx > columns and < dy > rows in place, such that the value of pixel (x, y) ends up at (x + dx, y + dy). Values moved past the edges are lost, and the exposed columns and rows keep their old values.
+
+        int w = width - Math.abs(dx), h = height - Math.abs(dy);
+
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+
+        long bytes = ValueLayout.JAVA_INT.byteSize();
+        int fromX = Math.max(0, -dx), toX = Math.max(0, dx);
+
+        if (dx == 0) {
+            MemorySegment.copy(segment, (long) Math.max(0, -dy) * width * bytes, segment, (long) Math.max(0, dy) * width * bytes, (long) h * width * bytes);
+            return;
+            // Whole rows form a single block, which MemorySegment.copy() moves correctly even though source and destination overlap.
+        }
+
+        for (int i = 0; i < h; i++) {
+            int y = dy > 0 ? h - 1 - i : i;
+            // Moving down, the rows are moved from the bottom up and vice versa, so no row is overwritten before it has been moved.
+
+            MemorySegment.copy(segment, ((long) (y + Math.max(0, -dy)) * width + fromX) * bytes, segment, ((long) (y + Math.max(0, dy)) * width + toX) * bytes, w * bytes);
+        }
+    }
+
+    public void save (Path file) throws IOException {
+        // Writes the values of the raster to < file >, in the layout read back by OffHeapRaster(int, int, Path).
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = segment.byteSize();
+
+            for (long offset = 0; offset < size; ) {
+                offset += channel.write(segment.asSlice(offset, Math.min(size - offset, 1 << 30)).asByteBuffer(), offset);
+                // A ByteBuffer holds at most 2^31 - 1 bytes, so larger rasters are written in slices.
+            }
+        }
+    }
+
+    public void force () {
+        // Writes any modified pages of a memory mapped raster to its file. Does nothing for a raster in native memory.
+
+        if (segment.isMapped()) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close () {
+        // Releases the native memory, or unmaps the file, of the raster.
+        arena.close();
+    }
+}
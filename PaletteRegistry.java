@@ -0,0 +1,244 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class PaletteRegistry {
+    // Every .mnd colour scheme of a directory, parsed once and kept in memory by name, e.g. "volcano" for mnd/volcano.mnd. Once watch() is called, files that are added, changed or deleted are reloaded in the background, so long-running services pick up palette edits without a restart.
+    // Looking up a palette or its colour table is a single map lookup, and names that are not in the registry are simply unknown, so request parameters can be used as names directly.
+
+    public static final Path DEFAULT_DIRECTORY = Path.of("mnd");
+    // Constant class field for the directory of the colour schemes shipped with the program.
+
+    private static final String SUFFIX = ".mnd";
+
+    private static final int COLOUR_TABLES = 16;
+    // Constant class field for how many colour tables, i.e. iteration limits, are kept per palette.
+
+    private final Path directory;
+
+    private final Map<String, Color[]> palettes = new ConcurrentHashMap<>();
+    // Class field for the parsed colour schemes, keyed by their file name without the suffix.
+
+    private final Map<Color[], Map<Integer, int[]>> colourTables = new WeakHashMap<>();
+    // Class field for the most recently used colour tables of every palette, keyed by the parsed palette itself and the iteration limit, and guarded by the map. A caller still holding a palette that was just reloaded builds its table for that palette only, never under the new one, and the tables of a replaced palette are dropped once it is no longer used.
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    // Class field for the callbacks told the name of every palette that is reloaded or removed.
+
+    private static PaletteRegistry shared;
+    // Class field for the registry of DEFAULT_DIRECTORY, created on first use.
+
+    public PaletteRegistry (Path directory) throws IOException {
+        // Construct a registry of every colour scheme in < directory >.
+
+        this.directory = directory;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                load(file);
+            }
+        }
+    }
+
+    public static synchronized PaletteRegistry getShared() throws IOException {
+        // Returns the registry of DEFAULT_DIRECTORY, which is watched for changes.
+
+        if (shared == null) {
+            shared = new PaletteRegistry(DEFAULT_DIRECTORY);
+            shared.watch();
+        }
+
+        return shared;
+    }
+
+    public Set<String> getNames() {
+        return palettes.keySet();
+    }
+
+    public Color[] get (String name) {
+        // Returns the colour scheme < name >, or null if there is none.
+        return palettes.get(name);
+    }
+
+    public int[] getColourTable (String name, int max) {
+        // Returns the colour table of < name > for < max > iterations, see Mandelbrot.getColourTable(), or null if there is no such palette.
+
+        Color[] palette = palettes.get(name);
+        return palette == null ? null : getColourTable(palette, max);
+    }
+
+    public int[] getColourTable (Color[] palette, int max) {
+        // Returns the colour table of < palette >, as returned by get(), for < max > iterations, such that a caller looking up a palette once uses the same palette for everything it renders.
+
+        synchronized (colourTables) {
+            return colourTables.computeIfAbsent(palette, k -> new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry (Map.Entry<Integer, int[]> eldest) {
+                    return size() > COLOUR_TABLES;
+                }
+            }).computeIfAbsent(max, k -> Mandelbrot.getColourTable(palette, max));
+            // A table is cheap to build compared to any render, so it is built under the lock.
+        }
+    }
+
+    public void addListener (Consumer<String> listener) {
+        // Registers < listener > to be called with the name of every palette that is reloaded or removed, after the new palette is in place, e.g. to drop renders in the old colours.
+        listeners.add(listener);
+    }
+
+    public void watch () throws IOException {
+        // Starts a daemon thread reloading the colour schemes of the directory whenever their files change.
+
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            reloadAll();
+                            continue;
+                            // Events were lost, so every file is read again.
+                        }
+
+                        Path file = directory.resolve((Path) event.context());
+
+                        if (!file.getFileName().toString().endsWith(SUFFIX)) {
+                            continue;
+                        }
+
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            remove(name(file));
+                        } else {
+                            load(file);
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        return;
+                        // The directory itself is gone.
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // The watcher was stopped.
+            }
+        }, "palette-watcher");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void reloadAll () {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                load(file);
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Could not read the palettes in \"" + directory + "\": " + e.getMessage());
+        }
+    }
+
+    private void load (Path file) {
+        // Parses < file > and replaces the palette of the same name. A file that cannot be read or parsed, e.g. one still being written, leaves the previous palette in place.
+
+        try {
+            Color[] palette = parse(Files.readAllBytes(file));
+            String name = name(file);
+
+            palettes.put(name, palette);
+            listeners.forEach(listener -> listener.accept(name));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Warning: Could not load the palette \"" + file + "\": " + e.getMessage());
+        }
+    }
+
+    private void remove (String name) {
+        palettes.remove(name);
+        listeners.forEach(listener -> listener.accept(name));
+    }
+
+    private static String name (Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    static Color[] parse (byte[] data) {
+        // Parses the contents of a .mnd file, one colour per non-empty line given by its red, green and blue values from 0 to 255, in a single pass over the bytes without creating any strings. Values after the third on a line are ignored, as in the original parser.
+
+        Color[] colours = new Color[64];
+        int count = 0;
+
+        int[] rgb = new int[3];
+        int values = 0, value = -1, line = 1;
+
+        for (int i = 0; i <= data.length; i++) {
+            int c = i < data.length ? data[i] : '\n';
+            // The end of the data ends the last line, also when the file has no final newline.
+
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : 10 * value) + (c - '0');
+
+                if (value > 255) {
+                    throw new IllegalArgumentException("Colour value above 255 on line " + line + ".");
+                }
+
+                continue;
+            }
+
+            if (value >= 0) {
+                if (values < 3) {
+                    rgb[values] = value;
+                }
+
+                values++;
+                value = -1;
+            }
+            // A number ends at the first character which is not a digit.
+
+            if (c == '\n') {
+                if (values > 0 && values < 3) {
+                    throw new IllegalArgumentException("Fewer than 3 colour values on line " + line + ".");
+                }
+
+                if (values > 0) {
+                    if (count == colours.length) {
+                        colours = Arrays.copyOf(colours, 2 * count);
+                    }
+
+                    colours[count++] = new Color(rgb[0], rgb[1], rgb[2]);
+                }
+
+                values = 0;
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                throw new IllegalArgumentException("Unexpected character '" + (char) c + "' on line " + line + ".");
+            }
+        }
+
+        if (count == 0) {
+            throw new IllegalArgumentException("The colour scheme is empty.");
+        }
+
+        return Arrays.copyOf(colours, count);
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class PanBuffer implements AutoCloseable {
+    // Keeps the iteration counts of the last rendered view, such that a view which is the same view moved by a whole number of pixels only costs the pixels it newly exposes. The counts are moved in place by OffHeapRaster.shift(), and only the strips uncovered along the edges are computed, so panning by a few pixels costs a few rows or columns instead of the whole frame.
+    // Any other view, e.g. after zooming or changing the kernel, is rendered in full and becomes the view to pan from.
+
+    private static final double ALIGNMENT_TOLERANCE = 1e-6;
+    // Constant class field for how close, as a fraction of the pixel spacing, the move must be to a whole number of pixels for the counts to be reused. Reused pixels are off from the exact coordinates of the new view by at most this much.
+
+    private static final int TILESIZE = 128;
+    // Constant class field for the width and height of the tiles the exposed strips are split into.
+
+    private View view;
+    private OffHeapRaster iterations;
+    // The view rendered last and its iteration counts, or null before the first render.
+
+    private long computed = 0;
+    // The number of pixels computed by the last render.
+
+    public interface Runner {
+        void run (List<Tile> tiles, Consumer<Tile> task);
+        // Runs < task > on every tile of < tiles >, in parallel and preferably in the given order, and returns once all of them are done.
+    }
+
+
+    public OffHeapRaster render (View next) {
+        // Returns the iteration counts of < next >, computed on all cores by the TileScheduler, see render(View, Runner).
+        return render(next, (tiles, task) -> TileScheduler.run(tiles, () -> false, task));
+    }
+
+    public synchronized OffHeapRaster render (View next, Runner runner) {
+        // Returns the iteration counts of < next >, reusing the counts of the previous view where < next > is a pixel-aligned pan of it. The pixels that are computed are run as tiles by < runner >, e.g. a RenderScheduler. The raster belongs to the buffer and is overwritten by the next call.
+
+        int[] offset = offset(view, next);
+        view = null;
+        // Should the render fail half way, the raster holds no view to pan from.
+
+        if (offset == null) {
+            if (iterations == null || iterations.getWidth() != next.getSize()) {
+                if (iterations != null) {
+                    iterations.close();
+                }
+
+                iterations = new OffHeapRaster(next.getSize(), next.getSize());
+            }
+
+            renderAll(next, runner);
+        } else {
+            iterations.shift(-offset[0], offset[1]);
+            // Panning right by a pixel moves the image one pixel to the left, and panning up moves it one pixel down, as rows are counted from the top.
+
+            renderStrips(next, offset[0], offset[1], runner);
+        }
+
+        view = next;
+        return iterations;
+    }
+
+    public synchronized long getComputed() {
+        return computed;
+    }
+
+    static int[] offset (View from, View to) {
+        // Returns the move from < from > to < to > in whole pixels, as { columns to the right, rows upwards }, or null if < to > is not a pixel-aligned pan of < from > with the same size, scale, kernel and iteration limit that leaves part of < from > in view.
+
+        if (from == null || from.getSize() != to.getSize() || from.getMax() != to.getMax() || !from.getKernel().toString().equals(to.getKernel().toString())) {
+            return null;
+        }
+
+        double spacing = from.getSidelength() / (from.getSize() - 1);
+
+        if (Math.abs(from.getSidelength() - to.getSidelength()) > ALIGNMENT_TOLERANCE * spacing) {
+            return null;
+        }
+
+        double dx = (to.getCenter().getRe() - from.getCenter().getRe()) / spacing;
+        double dy = (to.getCenter().getIm() - from.getCenter().getIm()) / spacing;
+        long x = Math.round(dx), y = Math.round(dy);
+
+        if (Math.abs(dx - x) > ALIGNMENT_TOLERANCE || Math.abs(dy - y) > ALIGNMENT_TOLERANCE || Math.abs(x) >= to.getSize() || Math.abs(y) >= to.getSize()) {
+            return null;
+        }
+
+        return new int[] { (int) x, (int) y };
+    }
+
+    private void renderAll (View next, Runner runner) {
+        int[] mirrors = next.mirrors();
+
+        runner.run(TileScheduler.schedule(next, mirrors), tile -> iterations.write(tile, next.iterate(tile, mirrors)));
+        // The tiles are split and ordered by their estimated cost, as in TileScheduler.render().
+
+        for (int y = 0; y < mirrors.length; y++) {
+            if (mirrors[y] >= 0) {
+                iterations.copyRow(mirrors[y], y);
+            }
+        }
+
+        computed = (long) next.getSize() * next.getSize();
+    }
+
+    private void renderStrips (View next, int dx, int dy, Runner runner) {
+        // Computes the columns and rows of < next > exposed by a pan of < dx > columns to the right and < dy > rows upwards.
+
+        int size = next.getSize();
+        int columns = Math.abs(dx), rows = Math.abs(dy);
+
+        List<Tile> strips = new ArrayList<>();
+        split(strips, dx > 0 ? size - columns : 0, 0, columns, size);
+        split(strips, dx > 0 ? 0 : columns, dy > 0 ? 0 : size - rows, size - columns, rows);
+        // The exposed columns are computed at full height, and the exposed rows only where they do not overlap the columns.
+
+        runner.run(strips, tile -> iterations.write(tile, next.iterate(tile)));
+
+        computed = (long) columns * size + (long) rows * (size - columns);
+    }
+
+    private static void split (List<Tile> tiles, int x, int y, int w, int h) {
+        // Adds the tiles of at most TILESIZE by TILESIZE pixels covering the rectangle (x, y, w, h) to < tiles >.
+
+        for (int ty = y; ty < y + h; ty += TILESIZE) {
+            for (int tx = x; tx < x + w; tx += TILESIZE) {
+                tiles.add(new Tile(tx, ty, Math.min(TILESIZE, x + w - tx), Math.min(TILESIZE, y + h - ty)));
+            }
+        }
+    }
+
+    public synchronized void drop () {
+        // Frees the iteration counts, such that the next render is computed in full, e.g. when their memory is needed by another render.
+
+        view = null;
+
+        if (iterations != null) {
+            iterations.close();
+            iterations = null;
+        }
+    }
+
+    @Override
+    public synchronized void close () {
+        if (iterations != null) {
+            iterations.close();
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class PngWriter {
+    // Writes .png files by compressing independent blocks of rows on all cores. Each block is deflated with the last 32 KB of the rows before it as a preset dictionary and ends on a byte boundary, so the blocks concatenate into one valid zlib stream which compresses nearly as well as a single-threaded encoder.
+
+    public static final int STORE = Deflater.NO_COMPRESSION;
+    public static final int FAST = Deflater.BEST_SPEED;
+    public static final int DEFAULT = 6;
+    // Constant class fields for the common compression levels. STORE writes the rows uncompressed and FAST trades file size for speed.
+
+    private static final int BLOCK_BYTES = 1 << 20;
+    // Constant class field for the approximate number of uncompressed bytes compressed by each task.
+
+    private static final int DICTIONARY = 32768;
+    // Constant class field for the size of the deflate window, i.e. how much of the preceding data a block may refer back to.
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    public interface RowSource {
+        void read (int y, int[] row);
+        // Copies the RGB or ARGB values of row < y > into < row >. Rows may be read concurrently by several threads.
+    }
+
+
+    public static void write (BufferedImage image, File file, int level) throws IOException {
+        // Writes < image > including its alpha channel.
+
+        int width = image.getWidth();
+        write(width, image.getHeight(), (y, row) -> image.getRGB(0, y, width, 1, row, 0, width), true, level, file);
+    }
+
+    public static void write (int width, int height, RowSource rows, boolean alpha, int level, File file) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            write(width, height, rows, alpha, level, output);
+        }
+    }
+
+    public static void write (int width, int height, RowSource rows, boolean alpha, int level, OutputStream output) throws IOException {
+        // Writes a < width > by < height > .png image with 8 bits per channel, read row by row from < rows >, compressed at the deflate < level >.
+
+        int channels = alpha ? 4 : 3;
+        long rowBytes = 1 + (long) width * channels;
+        // Every row is prefixed by its filter type.
+
+        int blockRows = (int) Math.max(1, Math.min(height, BLOCK_BYTES / rowBytes));
+        int blocks = (height + blockRows - 1) / blockRows;
+
+        DataOutputStream out = new DataOutputStream(output);
+        writeHeader(out, width, height, alpha);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = blocks == 1 ? null : Executors.newFixedThreadPool(threads);
+        // A single block, e.g. a small tile, is compressed on the calling thread, so images written concurrently by several threads start no threads of their own.
+        ArrayDeque<Future<Block>> window = new ArrayDeque<>();
+        // At most two blocks per thread are in flight, such that memory use does not grow with the size of the image.
+
+        long adler = 1;
+
+        try {
+            for (int b = 0; b < blocks || !window.isEmpty(); ) {
+                while (b < blocks && window.size() < 2 * threads) {
+                    int first = b * blockRows;
+                    int last = Math.min(height, first + blockRows);
+                    boolean end = ++b == blocks;
+                    window.add(pool == null ? CompletableFuture.completedFuture(compress(width, rows, alpha, level, first, last, end, true)) : pool.submit(() -> compress(width, rows, alpha, level, first, last, end, true)));
+                }
+
+                adler = writeBlock(out, window.poll().get(), adler);
+                // The blocks are written in order, each as an IDAT chunk of its own.
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Error: Could not compress the image.", e);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        writeTrailer(out, adler);
+    }
+
+    public static class Encoder {
+        // Writes a .png image whose blocks of rows are handed in by several threads in any order, e.g. by the bands of a streaming render as they are finished. Every caller compresses its own block, and blocks that arrive ahead of their turn wait compressed in memory until the blocks before them are written.
+        // The blocks are compressed without the rows before them as a dictionary, since those may not exist yet, which makes the file slightly larger than one written by PngWriter.write().
+
+        private final DataOutputStream out;
+        private final int width, height, level;
+        private final boolean alpha;
+
+        private final Map<Integer, Block> pending = new HashMap<>();
+        private int next = 0;
+        private long adler = 1;
+        // The compressed blocks waiting for their turn by first row, the first row not yet written and the Adler-32 checksum of the rows written so far, all guarded by the encoder.
+
+        public Encoder (int width, int height, boolean alpha, int level, OutputStream output) throws IOException {
+            // Construct an encoder of a < width > by < height > image and write the header of the file to < output >.
+
+            this.out = new DataOutputStream(output);
+            this.width = width;
+            this.height = height;
+            this.alpha = alpha;
+            this.level = level;
+
+            writeHeader(out, width, height, alpha);
+        }
+
+        public void write (int first, int last, RowSource rows) throws IOException {
+            // Compresses the rows from < first > to < last > on the calling thread and writes them once every row before < first > has been written. The blocks must cover the image without overlapping.
+
+            Block block = compress(width, rows, alpha, level, first, last, last == height, false);
+
+            synchronized (this) {
+                pending.put(first, block);
+
+                while ((block = pending.remove(next)) != null) {
+                    adler = writeBlock(out, block, adler);
+                    next += block.rows;
+                }
+            }
+        }
+
+        public synchronized void finish () throws IOException {
+            // Ends the file, once every row has been written.
+
+            if (next != height) {
+                throw new IOException("Error: Only " + next + " of " + height + " rows were written.");
+            }
+
+            writeTrailer(out, adler);
+        }
+    }
+
+    private static void writeHeader (DataOutputStream out, int width, int height, boolean alpha) throws IOException {
+        out.write(SIGNATURE);
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height).put((byte) 8).put((byte) (alpha ? 6 : 2)).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(out, "IHDR", header.array(), 13);
+        // 8 bits per channel, truecolour with or without alpha, deflate, adaptive filtering and no interlacing.
+
+        writeChunk(out, "IDAT", new byte[] { 0x78, (byte) 0x9C }, 2);
+        // The zlib header is written as its own chunk, since every block is compressed independently.
+    }
+
+    private static long writeBlock (DataOutputStream out, Block block, long adler) throws IOException {
+        // Writes < block > as an IDAT chunk and returns the Adler-32 checksum < adler > extended by its uncompressed data.
+
+        out.writeInt(block.data.length);
+        out.writeBytes("IDAT");
+        out.write(block.data);
+        out.writeInt(block.crc);
+
+        return combineAdler(adler, block.adler, block.length);
+    }
+
+    private static void writeTrailer (DataOutputStream out, long adler) throws IOException {
+        writeChunk(out, "IDAT", new byte[] { (byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler }, 4);
+        // The zlib stream ends with the Adler-32 checksum of all the uncompressed data.
+
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static Block compress (int width, RowSource rows, boolean alpha, int level, int first, int last, boolean end, boolean dictionary) {
+        // Filters and deflates the rows from < first > to < last >. With < dictionary >, the rows just before < first > are filtered again to rebuild the dictionary, so no block depends on the result of another.
+
+        int channels = alpha ? 4 : 3;
+        int rowBytes = 1 + width * channels;
+        int[] row = new int[width];
+
+        int history = first == 0 || !dictionary ? 0 : Math.min(first, (DICTIONARY + rowBytes - 1) / rowBytes);
+        byte[] raw = new byte[(last - first + history) * rowBytes];
+
+        for (int y = first - history; y < last; y++) {
+            rows.read(y, row);
+            filter(row, channels, level, raw, (y - first + history) * rowBytes);
+        }
+
+        int offset = history * rowBytes;
+        int length = raw.length - offset;
+
+        Deflater deflater = new Deflater(level, true);
+        // Raw deflate without a zlib header, as the header and checksum are written once for the whole stream.
+
+        if (history > 0) {
+            int size = Math.min(DICTIONARY, offset);
+            deflater.setDictionary(raw, offset - size, size);
+        }
+
+        deflater.setInput(raw, offset, length);
+
+        if (end) {
+            deflater.finish();
+        }
+
+        byte[] buffer = new byte[length + (length >> 3) + 1024];
+        int compressed = 0;
+
+        while (true) {
+            if (compressed == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            compressed += deflater.deflate(buffer, compressed, buffer.length - compressed, end ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+
+            if (end ? deflater.finished() : compressed < buffer.length) {
+                break;
+            }
+            // A sync flush ends the block on a byte boundary without marking it as the last one, so the next block can follow directly.
+        }
+
+        deflater.end();
+
+        Adler32 adler = new Adler32();
+        adler.update(raw, offset, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(new byte[] { 'I', 'D', 'A', 'T' });
+        crc.update(buffer, 0, compressed);
+
+        return new Block(Arrays.copyOf(buffer, compressed), (int) crc.getValue(), adler.getValue(), length, last - first);
+    }
+
+    private static void filter (int[] row, int channels, int level, byte[] raw, int offset) {
+        // Writes a row as bytes, using the Sub filter (the difference to the pixel to the left), or no filter at all when the image is stored uncompressed.
+
+        boolean sub = level != STORE;
+        raw[offset++] = (byte) (sub ? 1 : 0);
+        int previous = 0;
+
+        for (int pixel : row) {
+            raw[offset++] = (byte) ((pixel >>> 16) - (previous >>> 16));
+            raw[offset++] = (byte) ((pixel >>> 8) - (previous >>> 8));
+            raw[offset++] = (byte) (pixel - previous);
+
+            if (channels == 4) {
+                raw[offset++] = (byte) ((pixel >>> 24) - (previous >>> 24));
+            }
+            // Only the lowest 8 bits of each difference are kept, as the filter works modulo 256.
+
+            previous = sub ? pixel : 0;
+        }
+    }
+
+    private static long combineAdler (long adler1, long adler2, long length2) {
+        // Returns the Adler-32 checksum of two concatenated sequences from their checksums, as adler32_combine() in zlib.
+
+        final long BASE = 65521;
+        long remainder = length2 % BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % BASE;
+
+        sum1 += (adler2 & 0xFFFF) + BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + BASE - remainder;
+
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum2 >= (BASE << 1)) sum2 -= (BASE << 1);
+        if (sum2 >= BASE) sum2 -= BASE;
+
+        return (sum2 << 16) | sum1;
+    }
+
+    private static void writeChunk (DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        // Writes a chunk as its length, type, data and the CRC-32 of the type and data.
+
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static class Block {
+        // A compressed block of rows, with the CRC-32 of its IDAT chunk, the Adler-32 checksum and length of its uncompressed data and the number of rows.
+
+        final byte[] data;
+        final int crc;
+        final long adler;
+        final long length;
+        final int rows;
+
+        Block (byte[] data, int crc, long adler, long length, int rows) {
+            this.data = data;
+            this.crc = crc;
+            this.adler = adler;
+            this.length = length;
+            this.rows = rows;
+        }
+    }
+}
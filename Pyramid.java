@@ -0,0 +1,192 @@
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+public class Pyramid {
+    // Exports a view as a pyramid of image tiles for pannable web viewers, either in the Deep Zoom (DZI) layout or the XYZ layout of web maps. Only the finest level is rendered, and every coarser level is downsampled from the level below it by averaging 2 by 2 pixels, so the whole pyramid costs little more than its finest level.
+
+    private static final int TILESIZE = 256;
+    // Constant class field for the width and height of the tiles in pixels.
+
+    private static final String COLOURS_DIR = "mnd/";
+    // Constant class field for the directory containing the .mnd colour schemes.
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            usage();
+        }
+
+        View view = null;
+        String palette = "volcano";
+        boolean xyz = false;
+        int level = PngWriter.DEFAULT;
+
+        try {
+            Kernel kernel = new Kernel.Quadratic();
+
+            for (int i = 5; i < args.length; i++) {
+                if (i + 1 == args.length) {
+                    usage();
+                }
+
+                switch (args[i]) {
+                    case "--layout": xyz = parseLayout(args[++i]); break;
+                    case "--kernel": kernel = Kernel.parse(args[++i]); break;
+                    case "--palette": palette = args[++i]; break;
+                    case "--png-level": level = Integer.parseInt(args[++i]); break;
+                    default: usage();
+                }
+            }
+
+            view = new View(new Complex(Double.parseDouble(args[0]), Double.parseDouble(args[1])), Double.parseDouble(args[2]), Integer.parseInt(args[3]), kernel, Mandelbrot.MAX);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        int size = view.getSize();
+
+        if (xyz && (size % TILESIZE != 0 || Integer.bitCount(size / TILESIZE) != 1)) {
+            System.out.println("Error: The XYZ layout needs a size of " + TILESIZE + " times a power of 2.");
+            System.exit(-1);
+        }
+
+        Color[] colourScheme = Mandelbrot.getColourScheme(COLOURS_DIR + palette + ".mnd");
+
+        long t1 = System.nanoTime();
+        int tiles = export(view, Mandelbrot.getColourTable(colourScheme, view.getMax()), xyz, Path.of(args[4]), level);
+        long t2 = System.nanoTime();
+
+        System.out.println("Exported " + tiles + " tiles of " + view + " in " + (t2 - t1) / 1000000 + " ms.");
+    }
+
+    public static int export (View view, int[] colourTable, boolean xyz, Path output, int level) throws IOException {
+        // Writes the pyramid of < view > to < output >, which is the directory of the XYZ layout, or the name of the .dzi file and its _files directory without the extension. Returns the number of tiles written.
+
+        int size = view.getSize();
+        int levels = 32 - Integer.numberOfLeadingZeros(size - 1);
+        // Deep Zoom levels run from 1 by 1 pixel at level 0 up to the full size at level < levels >, halving the size, rounded up, at every level below.
+
+        int xyzOffset = 31 - Integer.numberOfLeadingZeros(TILESIZE);
+        // XYZ zoom level 0 is a single full tile, i.e. Deep Zoom level log2(TILESIZE).
+
+        if (!xyz) {
+            Files.writeString(Path.of(output + ".dzi"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"" + TILESIZE + "\">\n"
+                + "  <Size Width=\"" + size + "\" Height=\"" + size + "\"/>\n"
+                + "</Image>\n");
+        }
+
+        OffHeapRaster raster = new OffHeapRaster(size, size);
+        int written = 0;
+
+        try {
+            try (OffHeapRaster iterations = new OffHeapRaster(size, size)) {
+                Render.render(view, colourTable, iterations, raster, null);
+            }
+            // The iteration counts are only needed for the finest level.
+
+            for (int l = levels; l >= 0 && (!xyz || l >= xyzOffset); l--) {
+                Path directory = xyz ? output.resolve(Integer.toString(l - xyzOffset)) : Path.of(output + "_files", Integer.toString(l));
+                written += writeLevel(raster, directory, xyz, level);
+
+                if (l > 0) {
+                    OffHeapRaster coarser = downsample(raster);
+                    raster.close();
+                    raster = coarser;
+                }
+            }
+        } finally {
+            raster.close();
+        }
+
+        return written;
+    }
+
+    private static int writeLevel (OffHeapRaster raster, Path directory, boolean xyz, int level) throws IOException {
+        // Writes every tile of < raster > to < directory > in parallel, as "x/y.png" for the XYZ layout or "x_y.png" for Deep Zoom. Returns the number of tiles.
+
+        int columns = (raster.getWidth() + TILESIZE - 1) / TILESIZE;
+        int rows = (raster.getHeight() + TILESIZE - 1) / TILESIZE;
+
+        for (int x = 0; x < columns; x++) {
+            Files.createDirectories(xyz ? directory.resolve(Integer.toString(x)) : directory);
+        }
+
+        try {
+            IntStream.range(0, columns * rows).parallel().forEach(i -> {
+                int x = i % columns, y = i / columns;
+                Tile tile = new Tile(x * TILESIZE, y * TILESIZE, Math.min(TILESIZE, raster.getWidth() - x * TILESIZE), Math.min(TILESIZE, raster.getHeight() - y * TILESIZE));
+                int[] values = raster.read(tile);
+                File file = (xyz ? directory.resolve(x + "/" + y + ".png") : directory.resolve(x + "_" + y + ".png")).toFile();
+
+                try {
+                    PngWriter.write(tile.getWidth(), tile.getHeight(), (r, row) -> System.arraycopy(values, r * tile.getWidth(), row, 0, tile.getWidth()), false, level, file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return columns * rows;
+    }
+
+    private static OffHeapRaster downsample (OffHeapRaster source) {
+        // Returns < source > at half its width and height, rounded up, where each pixel is the average colour of the up to 2 by 2 pixels it covers.
+
+        int width = (source.getWidth() + 1) / 2, height = (source.getHeight() + 1) / 2;
+        OffHeapRaster target = new OffHeapRaster(width, height);
+
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int[] upper = new int[source.getWidth()], lower = new int[source.getWidth()], row = new int[width];
+            boolean single = 2 * y + 1 == source.getHeight();
+            // The last row of an odd height only covers a single row of the source.
+
+            source.read(2 * y, upper);
+            source.read(single ? 2 * y : 2 * y + 1, lower);
+
+            for (int x = 0; x < width; x++) {
+                int x1 = Math.min(2 * x + 1, source.getWidth() - 1);
+                row[x] = average(upper[2 * x], upper[x1], lower[2 * x], lower[x1]);
+            }
+
+            target.write(new Tile(0, y, width, 1), row);
+        });
+
+        return target;
+    }
+
+    private static int average (int a, int b, int c, int d) {
+        // Returns the average of four RGB colours, channel by channel, rounded to the nearest value.
+
+        int red = (((a >> 16) & 0xFF) + ((b >> 16) & 0xFF) + ((c >> 16) & 0xFF) + ((d >> 16) & 0xFF) + 2) >> 2;
+        int green = (((a >> 8) & 0xFF) + ((b >> 8) & 0xFF) + ((c >> 8) & 0xFF) + ((d >> 8) & 0xFF) + 2) >> 2;
+        int blue = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF) + 2) >> 2;
+
+        return red << 16 | green << 8 | blue;
+    }
+
+    private static boolean parseLayout (String layout) {
+        // Returns true for the XYZ layout and false for Deep Zoom.
+
+        switch (layout) {
+            case "dzi": return false;
+            case "xyz": return true;
+        }
+
+        throw new IllegalArgumentException("Unknown layout \"" + layout + "\".");
+    }
+
+    private static void usage () {
+        System.out.println("Error: The pyramid exporter should be called with the arguments: re im sidelength size output [--layout dzi|xyz] [--kernel k] [--palette name] [--png-level 0-9]");
+        System.exit(-1);
+    }
+}
@@ -0,0 +1,348 @@
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class Render {
+    // Headless renderer for large images. The view is rendered in tiles on all cores by the TileScheduler, and both the iteration counts and the colours are written straight into off-heap rasters, so the size of a render is limited by native memory or disk rather than by the Java heap.
+
+    private static final String COLOURS_DIR = "mnd/";
+    // Constant class field for the directory containing the .mnd colour schemes.
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            usage();
+        }
+
+        double re = 0, im = 0, sidelength = 0;
+        int size = 0;
+        Kernel kernel = new Kernel.Quadratic();
+        String palette = "volcano";
+        boolean equalised = false;
+        boolean distance = false;
+        Path mapped = null;
+        Path resume = null;
+        Path cacheDir = null;
+        long cacheBytes = RenderCache.DEFAULT_CAPACITY;
+        int level = PngWriter.DEFAULT;
+        int[] stages = null;
+
+        try {
+            re = Double.parseDouble(args[0]);
+            im = Double.parseDouble(args[1]);
+            sidelength = Double.parseDouble(args[2]);
+            size = Integer.parseInt(args[3]);
+
+            for (int i = 5; i < args.length; i++) {
+                // The arguments after the output file are options followed by a value.
+
+                if (i + 1 == args.length) {
+                    usage();
+                }
+
+                switch (args[i]) {
+                    case "--kernel": kernel = Kernel.parse(args[++i]); break;
+                    case "--palette": palette = args[++i]; break;
+                    case "--colouring": equalised = parseColouring(args[++i]); break;
+                    case "--sampling": distance = parseSampling(args[++i]); break;
+                    case "--mapped": mapped = Path.of(args[++i]); break;
+                    case "--checkpoint": resume = Path.of(args[++i]); break;
+                    case "--cache": cacheDir = Path.of(args[++i]); break;
+                    case "--cache-mb": cacheBytes = Long.parseLong(args[++i]) * 1024 * 1024; break;
+                    case "--png-level": level = Integer.parseInt(args[++i]); break;
+                    case "--pipeline": stages = parseStages(args[++i]); break;
+                    default: usage();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        if (sidelength <= 0 || size < 2) {
+            System.out.println("Error: The sidelength must be greater than 0 and the size at least 2.");
+            System.exit(-1);
+        }
+
+        if (distance && (equalised || !(kernel instanceof Kernel.Quadratic))) {
+            System.out.println("Error: Distance sampling only works with the mandelbrot kernel and linear colouring.");
+            System.exit(-1);
+        }
+
+        boolean tiff = args[4].endsWith(".tif") || args[4].endsWith(".tiff");
+
+        if (tiff && (equalised || stages != null || mapped != null || resume != null)) {
+            System.out.println("Error: A .tif file is written tile by tile as the render runs, so it cannot be combined with equalised colouring, --pipeline, --mapped or --checkpoint.");
+            System.exit(-1);
+        }
+
+        if (stages != null && (equalised || distance || mapped != null || resume != null)) {
+            System.out.println("Error: The pipeline streams the image without keeping the rasters, so it cannot be combined with equalised colouring, distance sampling, --mapped or --checkpoint.");
+            System.exit(-1);
+        }
+
+        View view = new View(new Complex(re, im), sidelength, size, kernel, Mandelbrot.MAX);
+        Color[] colourScheme = Mandelbrot.getColourScheme(COLOURS_DIR + palette + ".mnd");
+        int[] colourTable = Mandelbrot.getColourTable(colourScheme, view.getMax());
+
+        File output = new File(args[4]);
+        RenderCache cache = cacheDir == null ? null : new RenderCache(cacheDir, cacheBytes);
+        Path cached = null;
+        String imageKey = RenderCache.imageKey(view, colourScheme, (equalised ? " equalised" : "") + (distance ? " distance" : "") + (tiff ? " tiff" : ""), level);
+
+        if (cache != null) {
+            Path image = cache.get(imageKey);
+
+            if (image != null) {
+                Files.copy(image, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Copied " + view + " from the cache.");
+                return;
+            }
+
+            cached = distance ? null : cache.get(RenderCache.iterationsKey(view));
+            // The iteration map is shared by every palette, so a view rendered before in another palette only has to be coloured. Antialiased colours cannot be recovered from the iteration map, so distance sampling always renders.
+        }
+
+        if (stages != null) {
+            RenderPipeline pipeline = new RenderPipeline(view, colourTable, stages[0], stages[1], stages[2]);
+
+            long t1 = System.nanoTime();
+            pipeline.render(output, level);
+            long t2 = System.nanoTime();
+
+            for (RenderPipeline.Stage stage : pipeline.getStages()) {
+                System.out.println(stage.toString(t2 - t1));
+            }
+
+            if (cache != null) {
+                cache.put(imageKey, output.toPath());
+            }
+
+            System.out.println("Rendered and saved " + view + " in " + (t2 - t1) / 1000000 + " ms, limited by the " + pipeline.getBottleneck(t2 - t1).getName() + " stage.");
+            return;
+        }
+
+        if (tiff) {
+            long t1 = System.nanoTime();
+
+            try (TiffWriter writer = new TiffWriter(output.toPath(), size, size, level)) {
+                render(view, colourTable, writer, distance);
+            }
+
+            long t2 = System.nanoTime();
+
+            if (cache != null) {
+                cache.put(imageKey, output.toPath());
+            }
+
+            System.out.println("Rendered and saved " + view + " in " + (t2 - t1) / 1000000 + " ms.");
+            return;
+        }
+
+        if (mapped != null) {
+            Files.createDirectories(mapped);
+        }
+
+        try (Checkpoint checkpoint = resume == null || cached != null ? null : new Checkpoint(resume, view);
+             OffHeapRaster buffer = checkpoint != null ? null : cached != null ? new OffHeapRaster(size, size, cached) : mapped == null ? new OffHeapRaster(size, size) : new OffHeapRaster(size, size, mapped.resolve("iterations.raw"));
+             OffHeapRaster colours = mapped == null ? new OffHeapRaster(size, size) : new OffHeapRaster(size, size, mapped.resolve("colours.raw"))) {
+            // With --mapped, the rasters are memory mapped files in the given directory instead of native memory. With --checkpoint, the iteration counts are kept in the checkpoint directory instead.
+
+            OffHeapRaster iterations = checkpoint != null ? checkpoint.getIterations() : buffer;
+
+            if (checkpoint != null && checkpoint.getFinished() > 0) {
+                System.out.println("Resuming with " + checkpoint.getFinished() + " finished tiles.");
+            }
+
+            long t1 = System.nanoTime();
+
+            if (cached != null) {
+                colour(iterations, colours, equalised ? Equalizer.getColourTable(iterations, colourScheme, view.getMax()) : colourTable);
+            } else {
+                render(view, colourTable, iterations, colours, checkpoint, distance);
+
+                if (equalised) {
+                    colour(iterations, colours, Equalizer.getColourTable(iterations, colourScheme, view.getMax()));
+                    // The histogram needs every tile, so the equalised colours replace the linear ones once the render is done.
+                }
+            }
+
+            long t2 = System.nanoTime();
+
+            PngWriter.write(size, size, colours::read, false, level, output);
+            // The colour raster is encoded on all cores, row blocks at a time, without ever copying it onto the heap.
+            long t3 = System.nanoTime();
+
+            if (cache != null) {
+                if (cached == null && !distance) {
+                    cache.put(RenderCache.iterationsKey(view), iterations);
+                    // Distance sampling fills blocks far from the boundary with approximate counts, which must not be reused for the exact view.
+                }
+
+                cache.put(imageKey, output.toPath());
+            }
+
+            System.out.println("Rendered " + view + " in " + (t2 - t1) / 1000000 + " ms, saved in " + (t3 - t2) / 1000000 + " ms.");
+        }
+    }
+
+    static void render (View view, int[] colourTable, OffHeapRaster iterations, OffHeapRaster colours, Checkpoint checkpoint) {
+        // Renders every tile of the view in parallel with a single sample per pixel, see render(View, int[], OffHeapRaster, OffHeapRaster, Checkpoint, boolean).
+        render(view, colourTable, iterations, colours, checkpoint, false);
+    }
+
+    static void render (View view, int[] colourTable, OffHeapRaster iterations, OffHeapRaster colours, Checkpoint checkpoint, boolean distance) {
+        // Renders every tile of the view in parallel. Each thread writes the iteration counts and colours of its tiles directly into the rasters. With a < checkpoint >, which may be null, the tiles finished by an earlier run are only coloured, and every new tile is recorded in the checkpoint. With < distance >, the tiles are antialiased by the DistanceEstimator.
+
+        int[] mirrors = distance ? new int[view.getSize()] : view.mirrors();
+        // When the view straddles the real axis, the rows mirrored by conjugate symmetry are skipped and copied once every tile is done.
+
+        if (distance) {
+            Arrays.fill(mirrors, -1);
+            // The DistanceEstimator computes whole tiles.
+        }
+
+        List<Tile> resumed = new ArrayList<>();
+
+        TileScheduler.run(view, mirrors, tile -> {
+            if (checkpoint != null && checkpoint.isFinished(tile)) {
+                resumed.add(tile);
+                return true;
+            }
+
+            return false;
+        }, () -> false, tile -> {
+            DistanceEstimator.Result sampled = distance ? DistanceEstimator.render(view, tile, colourTable) : null;
+            int[] values = distance ? sampled.getIterations() : view.iterate(tile, mirrors);
+
+            iterations.write(tile, values);
+
+            if (checkpoint != null) {
+                try {
+                    checkpoint.complete(tile);
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not write the checkpoint: " + e.getMessage());
+                    // A failed checkpoint only costs the ability to resume, so the render carries on.
+                }
+            }
+
+            if (distance) {
+                colours.write(tile, sampled.getColours());
+                return;
+            }
+
+            colour(values, colourTable);
+            colours.write(tile, values);
+        });
+
+        resumed.parallelStream().forEach(tile -> {
+            int[] values = iterations.read(tile);
+            colour(values, colourTable);
+            colours.write(tile, values);
+        });
+        // The tiles finished before the render was resumed are coloured from the iteration counts in the checkpoint, with a single sample per pixel.
+
+        for (int y = 0; y < mirrors.length; y++) {
+            if (mirrors[y] >= 0) {
+                iterations.copyRow(mirrors[y], y);
+                colours.copyRow(mirrors[y], y);
+            }
+        }
+    }
+
+    static void render (View view, int[] colourTable, TiffWriter writer, boolean distance) throws IOException {
+        // Renders the tiles of < writer > in parallel, each thread writing its finished tiles straight into the file, such that no raster of the whole image is ever held. With < distance >, the tiles are antialiased by the DistanceEstimator.
+
+        try {
+            writer.getTiles().parallelStream().forEach(tile -> {
+                int[] colours = distance ? DistanceEstimator.render(view, tile, colourTable).getColours() : view.iterate(tile);
+
+                if (!distance) {
+                    colour(colours, colourTable);
+                }
+
+                try {
+                    writer.write(tile, colours);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static void colour (OffHeapRaster iterations, OffHeapRaster colours, int[] colourTable) {
+        // Writes the colour of every iteration count in < iterations > to < colours >, row by row in parallel.
+
+        int width = iterations.getWidth();
+
+        IntStream.range(0, iterations.getHeight()).parallel().forEach(y -> {
+            int[] row = new int[width];
+            iterations.read(y, row);
+            colour(row, colourTable);
+            colours.write(new Tile(0, y, width, 1), row);
+        });
+    }
+
+    private static void colour (int[] values, int[] colourTable) {
+        // Replaces the iteration counts in < values > by their colours in place.
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = colourTable[values[i]];
+        }
+    }
+
+    private static boolean parseColouring (String colouring) {
+        // Returns true for histogram-equalised colouring and false for the linear colour bands of Mandelbrot.getIterationColour().
+
+        switch (colouring) {
+            case "linear": return false;
+            case "equalised": return true;
+        }
+
+        throw new IllegalArgumentException("Unknown colouring \"" + colouring + "\".");
+    }
+
+    private static boolean parseSampling (String sampling) {
+        // Returns true for sampling guided by the distance estimate and false for a single sample per pixel.
+
+        switch (sampling) {
+            case "single": return false;
+            case "distance": return true;
+        }
+
+        throw new IllegalArgumentException("Unknown sampling \"" + sampling + "\".");
+    }
+
+    private static int[] parseStages (String stages) {
+        // Returns the number of threads of the iterate, colour and encode stages of the pipeline, given as e.g. "3,1,2".
+
+        String[] counts = stages.split(",");
+
+        if (counts.length != 3) {
+            throw new IllegalArgumentException("The pipeline needs the number of threads of its 3 stages, e.g. \"3,1,2\".");
+        }
+
+        int[] threads = Arrays.stream(counts).mapToInt(Integer::parseInt).toArray();
+
+        if (Arrays.stream(threads).anyMatch(t -> t < 1)) {
+            throw new IllegalArgumentException("Every stage of the pipeline needs at least 1 thread.");
+        }
+
+        return threads;
+    }
+
+    private static void usage () {
+        System.out.println("Error: The renderer should be called with the arguments: re im sidelength size output.png|output.tif [--kernel k] [--palette name] [--colouring linear|equalised] [--sampling single|distance] [--mapped dir] [--checkpoint dir] [--cache dir] [--cache-mb megabytes] [--png-level 0-9] [--pipeline iterate,colour,encode]");
+        System.exit(-1);
+    }
+}
@@ -0,0 +1,174 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RenderCache {
+    // Persistent cache of finished renders in a local directory. Every entry is a file named by a hash of all the parameters it depends on, so identical renders map to the same file and no index has to be kept.
+    // Iteration maps depend only on the view, while encoded images also depend on the palette and compression level, so one iteration map is shared by the images of every palette.
+    // Once the files exceed the capacity, the least recently used ones are deleted. The last access of each file is its modification time, such that the order survives restarts.
+
+    public static final long DEFAULT_CAPACITY = 4L * 1024 * 1024 * 1024;
+    // Constant class field for the default total size of the cache in bytes.
+
+    private final Path directory;
+    private final long capacity;
+
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    // Class fields for the files of the cache with their sizes, from least to most recently used, and their total size. Both are guarded by the cache itself.
+
+    public RenderCache (Path directory, long capacity) throws IOException {
+        // Construct a cache in < directory > holding at most < capacity > bytes, picking up the files of any earlier run.
+
+        this.directory = directory;
+        this.capacity = capacity;
+
+        Files.createDirectories(directory);
+
+        List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{iter,png}")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+
+        files.sort(Comparator.comparing(file -> {
+            try {
+                return Files.getLastModifiedTime(file);
+            } catch (IOException e) {
+                return FileTime.fromMillis(0);
+            }
+        }));
+        // The files are added from the least to the most recently used.
+
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            bytes += size;
+        }
+
+        evict();
+    }
+
+    public static String iterationsKey (View view) {
+        // Returns the name of the iteration map of < view >.
+        return hash(view.toString()) + ".iter";
+    }
+
+    public static String imageKey (View view, Color[] palette, String options, int level) {
+        // Returns the name of the image of < view > coloured with < palette >, rendered with < options >, e.g. " equalised", and compressed at < level >. The key holds the colours of the palette rather than its name, such that editing a .mnd file never serves an image in the old colours.
+
+        StringBuilder colours = new StringBuilder();
+
+        for (Color colour : palette) {
+            colours.append(String.format("%06x ", colour.getRGB() & 0xffffff));
+        }
+
+        return hash(view + " " + colours + options + " " + level) + ".png";
+    }
+
+    public synchronized Path get (String name) throws IOException {
+        // Returns the path of the entry < name > and marks it as the most recently used, or null if it is not cached.
+
+        Path file = directory.resolve(name);
+
+        if (!Files.exists(file)) {
+            Long size = entries.remove(name);
+            bytes -= size == null ? 0 : size;
+            return null;
+            // The entry may have been evicted by another process sharing the directory.
+        }
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+
+        if (entries.get(name) == null) {
+            long size = Files.size(file);
+            entries.put(name, size);
+            bytes += size;
+            // The entry was added by another process sharing the directory.
+        }
+
+        return file;
+    }
+
+    public void put (String name, Path source) throws IOException {
+        // Adds a copy of < source > as the entry < name >, evicting the least recently used entries to stay within the capacity.
+
+        Path temporary = Files.createTempFile(directory, "put", ".tmp");
+
+        try {
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // The entry is copied under a temporary name and then renamed, so a reader never sees a partial file.
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        put(name);
+    }
+
+    public void put (String name, OffHeapRaster raster) throws IOException {
+        // Adds the values of < raster > as the entry < name >, in the layout read back by OffHeapRaster(int, int, Path).
+
+        Path temporary = Files.createTempFile(directory, "put", ".tmp");
+
+        try {
+            raster.save(temporary);
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        put(name);
+    }
+
+    private synchronized void put (String name) throws IOException {
+        // Records the new entry < name > and evicts entries until the cache is within its capacity.
+
+        long size = Files.size(directory.resolve(name));
+        Long previous = entries.put(name, size);
+        bytes += size - (previous == null ? 0 : previous);
+
+        evict();
+    }
+
+    private synchronized void evict () throws IOException {
+        // Deletes the least recently used entries until the total size is at most the capacity.
+
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+        while (bytes > capacity && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            bytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static String hash (String parameters) {
+        // Returns the SHA-256 hash of < parameters > in hexadecimal.
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(parameters.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+            // Every Java platform is required to support SHA-256.
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public class RenderClient {
+    // Thin client for the RenderDaemon. It sends the arguments of a single render over the Unix domain socket and prints the answer, so the only cost besides the render itself is starting this small class.
+
+
+    public static void main(String[] args) throws IOException {
+        Path socket = RenderDaemon.DEFAULT_SOCKET;
+        int first = 0;
+
+        if (args.length >= 2 && args[0].equals("--socket")) {
+            socket = Path.of(args[1]);
+            first = 2;
+        }
+
+        if (args.length - first < 5) {
+            System.out.println("Error: The render client should be called with the arguments: [--socket path] re im sidelength size output.png [--kernel k] [--palette name] [--png-level 0-9] [--tenant name] [--priority interactive|batch]");
+            System.exit(-1);
+        }
+
+        StringBuilder request = new StringBuilder();
+
+        for (int i = first; i < args.length; i++) {
+            String arg = i == first + 4 ? Path.of(args[i]).toAbsolutePath().toString() : args[i];
+            // The output path is made absolute, since the daemon may run in another directory.
+
+            if (arg.isEmpty() || arg.chars().anyMatch(Character::isWhitespace)) {
+                System.out.println("Error: The arguments may not be empty or contain whitespace.");
+                System.exit(-1);
+            }
+
+            request.append(i == first ? "" : " ").append(arg);
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+
+            PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), true);
+            BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+
+            out.println(request);
+            String answer = in.readLine();
+
+            System.out.println(answer == null ? "Error: The daemon closed the connection." : answer);
+
+            if (answer == null || !answer.startsWith("OK")) {
+                System.exit(-1);
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Could not reach the render daemon on " + socket + ": " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
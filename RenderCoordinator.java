@@ -0,0 +1,278 @@
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RenderCoordinator {
+    private static final int TILESIZE = 128;
+    // Constant class field for the width and height of the tiles dispatched to the workers.
+
+    private static final int WINDOW = 2;
+    // Constant class field for how many tiles per worker core are kept in flight, such that a worker never waits for the network between two tiles.
+
+    private static View view;
+    // Class field for the view being rendered.
+
+    private static List<Tile> tiles;
+    // Class field for the tiles of the view, where the index of a tile is its id in the protocol.
+
+    private static OffHeapRaster raster;
+    // Class field for the iteration counts of the whole view, written off-heap as the results stream back from the workers.
+
+    private static final String COLOURS_PATH = "mnd/volcano.mnd";
+    // Constant class field acting as the path to the .mnd file used to colour the finished render.
+
+    private static final ArrayDeque<Integer> pending = new ArrayDeque<>();
+    private static int[] inFlight;
+    private static boolean[] completed;
+    private static int remaining;
+    // Class fields for the tiles waiting to be dispatched, the number of workers currently computing each tile, which tiles are completed and how many are left. All of them are guarded by < pending >.
+
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5 || args.length > 7) {
+            System.out.println("Error: The coordinator should be called with the arguments: re im sidelength size output.png [port] [kernel]");
+            System.exit(-1);
+        }
+
+        int size = 0, port = 7070;
+        double re = 0, im = 0, sidelength = 0;
+        Kernel kernel = new Kernel.Quadratic();
+
+        try {
+            re = Double.parseDouble(args[0]);
+            im = Double.parseDouble(args[1]);
+            sidelength = Double.parseDouble(args[2]);
+            size = Integer.parseInt(args[3]);
+            port = args.length > 5 ? Integer.parseInt(args[5]) : port;
+            kernel = args.length > 6 ? Kernel.parse(args[6]) : kernel;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        if (sidelength <= 0 || size < 2) {
+            System.out.println("Error: The sidelength must be greater than 0 and the size at least 2.");
+            System.exit(-1);
+        }
+
+        view = new View(new Complex(re, im), sidelength, size, kernel, Mandelbrot.MAX);
+        tiles = view.tiles(TILESIZE);
+        raster = new OffHeapRaster(size, size);
+        inFlight = new int[tiles.size()];
+        completed = new boolean[tiles.size()];
+        remaining = tiles.size();
+
+        for (int i = 0; i < tiles.size(); i++) {
+            pending.add(i);
+        }
+
+        ServerSocket server = new ServerSocket(port);
+        System.out.println("Waiting for workers on port " + port + ", " + tiles.size() + " tiles to render.");
+
+        Thread acceptor = new Thread(() -> {
+            // Accepts workers for as long as the render runs, such that workers can join or be restarted at any time.
+
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> serve(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                    // The server socket is closed once the render is complete.
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        synchronized (pending) {
+            while (remaining > 0) {
+                pending.wait();
+            }
+        }
+
+        server.close();
+
+        Color[] colourScheme = Mandelbrot.getColourScheme(COLOURS_PATH);
+        int[] colours = Mandelbrot.getColourTable(colourScheme, view.getMax());
+        PngWriter.write(size, size, (y, row) -> {
+            raster.read(y, row);
+
+            for (int x = 0; x < row.length; x++) {
+                row[x] = colours[row[x]];
+            }
+            // The rows are coloured as the encoder reads them.
+        }, false, PngWriter.DEFAULT, new File(args[4]));
+
+        raster.close();
+        System.out.println("Saved render to " + args[4] + ".");
+    }
+
+    private static void serve (Socket socket) {
+        // Runs the conversation with a single worker. Tiles are sent until the worker has < WINDOW > tiles per core in flight, after which one result is read before the next tile is sent.
+
+        Set<Integer> mine = new HashSet<>();
+        // The tiles sent to this worker that it has not yet returned.
+
+        String name = socket.getRemoteSocketAddress().toString();
+
+        try (socket) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int window = WINDOW * Math.max(1, input.readInt());
+            // The worker starts by announcing its number of cores.
+
+            output.writeDouble(view.getCenter().getRe());
+            output.writeDouble(view.getCenter().getIm());
+            output.writeDouble(view.getSidelength());
+            output.writeInt(view.getSize());
+            output.writeUTF(view.getKernel().toString());
+            output.writeInt(view.getMax());
+            // The view is sent once, after which only tile ids and positions are exchanged.
+
+            System.out.println("Worker " + name + " joined.");
+
+            while (true) {
+                int id;
+
+                while (mine.size() < window && (id = next(mine)) >= 0) {
+                    Tile tile = tiles.get(id);
+                    output.writeInt(id);
+                    output.writeInt(tile.getX());
+                    output.writeInt(tile.getY());
+                    output.writeInt(tile.getWidth());
+                    output.writeInt(tile.getHeight());
+                    mine.add(id);
+                }
+
+                output.flush();
+
+                if (mine.isEmpty()) {
+                    if (!awaitWork()) {
+                        output.writeInt(-1);
+                        output.flush();
+                        return;
+                        // The render is complete and the worker is told to stop.
+                    }
+
+                    continue;
+                }
+
+                id = input.readInt();
+                int length = input.readInt();
+
+                if (id < 0 || id >= tiles.size() || !mine.contains(id) || length != 4 * tiles.get(id).getWidth() * tiles.get(id).getHeight()) {
+                    throw new IOException("Invalid result for tile " + id + " of " + length + " bytes.");
+                    // A worker returning a tile it was not sent, or a tile of the wrong size, is dropped like a lost worker, and its tiles are dispatched again.
+                }
+
+                byte[] data = new byte[length];
+                input.readFully(data);
+                mine.remove(id);
+                complete(id, data);
+            }
+        } catch (IOException e) {
+            System.out.println("Worker " + name + " was lost: " + e.getMessage());
+        } finally {
+            release(mine);
+            // Whatever the reason the conversation ended, the tiles the worker had not returned are dispatched again.
+        }
+    }
+
+    private static int next (Set<Integer> mine) {
+        // Returns the id of the next tile for a worker, or -1 if there is nothing to send. Once no tiles are pending, an idle worker steals the incomplete tile with the fewest workers on it, such that a slow worker cannot hold up the end of the render.
+
+        synchronized (pending) {
+            Integer id = pending.poll();
+
+            if (id != null) {
+                inFlight[id]++;
+                return id;
+            }
+
+            int stolen = -1;
+
+            for (int i = 0; i < completed.length; i++) {
+                if (!completed[i] && !mine.contains(i) && (stolen < 0 || inFlight[i] < inFlight[stolen])) {
+                    stolen = i;
+                }
+            }
+
+            if (stolen >= 0) {
+                inFlight[stolen]++;
+            }
+
+            return stolen;
+        }
+    }
+
+    private static boolean awaitWork () throws IOException {
+        // Blocks an idle worker until a tile is released again or the render completes. Returns false once the render is complete.
+
+        synchronized (pending) {
+            if (remaining > 0 && pending.isEmpty()) {
+                try {
+                    pending.wait(1000);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted while waiting for tiles.");
+                }
+            }
+
+            return remaining > 0;
+        }
+    }
+
+    private static void complete (int id, byte[] data) {
+        // Writes a returned tile into the raster, unless another worker already returned the same tile.
+
+        synchronized (pending) {
+            inFlight[id]--;
+
+            if (completed[id]) {
+                return;
+            }
+
+            completed[id] = true;
+        }
+
+        int[] iterations = new int[data.length / 4];
+        ByteBuffer.wrap(data).asIntBuffer().get(iterations);
+        raster.write(tiles.get(id), iterations);
+        // The tiles are disjoint, so the raster is written outside the lock.
+
+        synchronized (pending) {
+            remaining--;
+            pending.notifyAll();
+        }
+    }
+
+    private static void release (Set<Integer> mine) {
+        // Puts the incomplete tiles of a lost worker back at the front of the queue.
+
+        synchronized (pending) {
+            for (int id : mine) {
+                inFlight[id]--;
+
+                if (!completed[id] && inFlight[id] == 0 && !pending.contains(id)) {
+                    pending.addFirst(id);
+                }
+            }
+
+            pending.notifyAll();
+        }
+    }
+}
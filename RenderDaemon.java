@@ -0,0 +1,208 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RenderDaemon {
+    // A resident renderer listening on a Unix domain socket. The JVM, the compiled kernels, the rendering threads and the palettes, see PaletteRegistry, stay loaded between renders, so each render only costs its actual computation and encoding.
+    // The protocol is one line of text per render, with the same arguments as Render.java: "re im sidelength size output.png [--kernel k] [--palette name] [--png-level 0-9] [--tenant name] [--priority interactive|batch]". Renders are run by a RenderScheduler, which gives interactive renders precedence and shares the threads fairly between tenants, by default a tenant per connection. The daemon answers with one line, "OK <milliseconds>" or "Error: <message>". The output path is resolved by the daemon, so clients should send absolute paths.
+
+    static final Path DEFAULT_SOCKET = Path.of(System.getProperty("java.io.tmpdir"), "mandelbrot.sock");
+    // Constant class field for the socket path used when none is given.
+
+    private static final int WARMUP_SIZE = 512;
+    // Constant class field for the size of the render run at startup, such that the kernels are compiled before the first request arrives.
+
+    private static final double INTERACTIVE_COST = 2e9;
+    // Constant class field for the largest estimated number of iterations of a render with interactive priority, a few seconds of work. Larger renders run as batch jobs.
+
+    private static PaletteRegistry palettes;
+    // Class field for the palettes of the mnd directory, loaded at startup and reloaded when their files change.
+
+    private static final RenderScheduler scheduler = new RenderScheduler(Runtime.getRuntime().availableProcessors(), ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getTotalMemorySize() / 2, INTERACTIVE_COST);
+    // Class field for the scheduler sharing the rendering threads between the clients, admitting renders within half of the physical memory.
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 1) {
+            System.out.println("Error: The render daemon should be called with an optional socket path.");
+            System.exit(-1);
+        }
+
+        Path socket = args.length == 1 ? Path.of(args[0]) : DEFAULT_SOCKET;
+
+        long t1 = System.nanoTime();
+        palettes = PaletteRegistry.getShared();
+        warmUp();
+        long t2 = System.nanoTime();
+
+        Files.deleteIfExists(socket);
+        // A socket file left behind by a daemon that was killed would make the bind fail.
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException e) {
+                // The socket file is only left behind.
+            }
+        }));
+
+        System.out.println("Warmed up in " + (t2 - t1) / 1000000 + " ms, listening on " + socket);
+
+        ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+        // Every connection waits on its own virtual thread, while the renders themselves run on the threads of the TileScheduler.
+
+        for (long connection = 0; ; connection++) {
+            SocketChannel client = server.accept();
+            long id = connection;
+            connections.execute(() -> serve(client, id));
+        }
+    }
+
+    private static void serve (SocketChannel client, long connection) {
+        // Answers every render request sent on < client > until it closes the connection. Each connection keeps the iteration counts of its last render, so a client panning the view one request at a time only pays for the newly exposed pixels. The memory of those counts stays charged to the scheduler through the last job of the connection, which is closed with the connection, or earlier by the scheduler when another render needs the memory, dropping the counts.
+
+        AtomicReference<RenderScheduler.Job> held = new AtomicReference<>();
+
+        try (client;
+             PanBuffer pan = new PanBuffer();
+             BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(Channels.newWriter(client, StandardCharsets.UTF_8), true)) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    long t1 = System.nanoTime();
+                    render(line.trim().split("\\s+"), pan, held, "connection-" + connection);
+                    long t2 = System.nanoTime();
+
+                    out.println("OK " + (t2 - t1) / 1000000);
+                } catch (IllegalArgumentException | IOException | UncheckedIOException | RejectedExecutionException | CancellationException e) {
+                    out.println("Error: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            // The client disconnected, so there is nobody left to answer.
+        } finally {
+            if (held.get() != null) {
+                held.get().close();
+            }
+        }
+    }
+
+    static void render (String[] args, PanBuffer pan, AtomicReference<RenderScheduler.Job> held, String tenant) throws IOException {
+        // Renders the image described by < args >, on the form of the arguments of Render.java, and writes it to the output file. The iteration counts are taken from < pan >, which reuses the previous render of the connection when possible, and are computed as a job of < tenant > unless the request names another.
+        // The job replaces the job in < held >, which holds the memory of the raster of < pan >, and is itself kept in < held > afterwards, retaining that memory until the next render or the end of the connection.
+
+        if (args.length < 5) {
+            throw new IllegalArgumentException("Expected: re im sidelength size output.png [--kernel k] [--palette name] [--png-level 0-9] [--tenant name] [--priority interactive|batch]");
+        }
+
+        Kernel kernel = new Kernel.Quadratic();
+        String palette = "volcano";
+        int level = PngWriter.DEFAULT;
+        RenderScheduler.Priority priority = RenderScheduler.Priority.INTERACTIVE;
+
+        for (int i = 5; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+
+            switch (args[i]) {
+                case "--kernel": kernel = Kernel.parse(args[++i]); break;
+                case "--palette": palette = args[++i]; break;
+                case "--png-level": level = Integer.parseInt(args[++i]); break;
+                case "--tenant": tenant = args[++i]; break;
+                case "--priority": priority = parsePriority(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        double sidelength = Double.parseDouble(args[2]);
+        int size = Integer.parseInt(args[3]);
+
+        if (sidelength <= 0 || size < 2) {
+            throw new IllegalArgumentException("The sidelength must be greater than 0 and the size at least 2.");
+        }
+
+        View view = new View(new Complex(Double.parseDouble(args[0]), Double.parseDouble(args[1])), sidelength, size, kernel, Mandelbrot.MAX);
+        int[] colourTable = getColourTable(palette, view.getMax());
+
+        RenderScheduler.Job job;
+
+        try {
+            job = scheduler.admit(tenant, priority, view, 2, held.get());
+            // The iteration counts and the colours take a raster each, and the raster of the previous render is released for them.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The render was interrupted while waiting for memory.");
+        }
+
+        held.set(job);
+
+        try (OffHeapRaster colours = new OffHeapRaster(size, size)) {
+            Render.colour(pan.render(view, job::run), colours, colourTable);
+            PngWriter.write(size, size, colours::read, false, level, new File(args[4]));
+        } finally {
+            job.retain(4L * size * size, pan::drop);
+            // The colours are freed, while the iteration counts stay in < pan > for the next render, unless the scheduler reclaims their memory for another render first.
+        }
+    }
+
+    private static RenderScheduler.Priority parsePriority (String priority) {
+        switch (priority) {
+            case "interactive": return RenderScheduler.Priority.INTERACTIVE;
+            case "batch": return RenderScheduler.Priority.BATCH;
+        }
+
+        throw new IllegalArgumentException("Unknown priority \"" + priority + "\"");
+    }
+
+    private static void warmUp () throws IOException {
+        // Renders a view once without writing it, such that the JIT compiles the kernel, colouring and encoding loops before the first request.
+
+        View view = new View(new Complex(-0.5, 0), 2, WARMUP_SIZE, new Kernel.Quadratic(), Mandelbrot.MAX);
+
+        try (OffHeapRaster iterations = new OffHeapRaster(WARMUP_SIZE, WARMUP_SIZE);
+             OffHeapRaster colours = new OffHeapRaster(WARMUP_SIZE, WARMUP_SIZE)) {
+            Render.render(view, getColourTable("volcano", view.getMax()), iterations, colours, null);
+            PngWriter.write(WARMUP_SIZE, WARMUP_SIZE, colours::read, false, PngWriter.DEFAULT, OutputStream.nullOutputStream());
+        }
+    }
+
+    private static int[] getColourTable (String palette, int max) {
+        // Returns the colour table of < palette > for < max > iterations from the registry.
+
+        int[] colourTable = palettes.getColourTable(palette, max);
+
+        if (colourTable == null) {
+            throw new IllegalArgumentException("Unknown palette \"" + palette + "\"");
+            // Only the names of the palettes in the registry are accepted, so the name never reaches the file system.
+        }
+
+        return colourTable;
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RenderPipeline {
+    // Renders a view straight into a .png file in three stages: iterating tiles, colouring them and encoding finished bands of rows. The stages run on threads of their own, as many as configured for each, and pass tiles through bounded queues, so a stage that falls behind makes the stages before it wait instead of letting finished tiles pile up in memory.
+    // The tiles are taken band by band from the top, so bands are completed roughly in order and only a few of them are held at once, whatever the size of the image. Every stage counts the time its threads spend working, waiting for input and waiting for room in the next queue, which shows the slowest stage.
+
+    private static final int TILESIZE = 128;
+    // Constant class field for the width and height of the tiles, and thereby the height of the bands compressed by the encode stage.
+
+    private static final int QUEUE_FACTOR = 2;
+    // Constant class field for the capacity of each queue per thread of the stage taking from it.
+
+    private static final RenderedTile END = new RenderedTile(null, null, null);
+    // Constant class field marking the end of a queue, one per thread taking from it.
+
+    private final View view;
+    private final int[] colourTable;
+    private final Stage iterate, colour, encode;
+
+    private static class RenderedTile {
+        // A tile passed between the stages, with the iteration count or colour of each of its pixels, stored row by row.
+
+        final Tile tile;
+        final int[] values;
+        final Band band;
+
+        RenderedTile (Tile tile, int[] values, Band band) {
+            this.tile = tile;
+            this.values = values;
+            this.band = band;
+        }
+    }
+
+    private static class Band {
+        // The colours of a band of rows, filled in tile by tile by the encode stage.
+
+        final int y, height, width;
+        final int[] colours;
+        final AtomicInteger missing;
+
+        Band (int y, int height, int width, int tiles) {
+            this.y = y;
+            this.height = height;
+            this.width = width;
+            this.colours = new int[height * width];
+            this.missing = new AtomicInteger(tiles);
+        }
+    }
+
+    public static class Stage {
+        // A stage of the pipeline with its number of threads and the time they spent working, waiting for input and blocked on a full output queue.
+
+        private final String name;
+        private final int threads;
+        private final AtomicLong items = new AtomicLong(), busy = new AtomicLong(), starved = new AtomicLong(), blocked = new AtomicLong();
+
+        Stage (String name, int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Every stage needs at least 1 thread.");
+            }
+
+            this.name = name;
+            this.threads = threads;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public double getUtilisation (long nanos) {
+            // Returns the share of the time of its threads the stage spent working during a run of < nanos > nanoseconds.
+            return (double) busy.get() / threads / Math.max(1, nanos);
+        }
+
+        public String toString (long nanos) {
+            long total = (long) threads * Math.max(1, nanos);
+            return String.format("%-8s %2d threads %7d tiles   busy %3d%%   waiting %3d%%   blocked %3d%%", name, threads, items.get(), 100 * busy.get() / total, 100 * starved.get() / total, 100 * blocked.get() / total);
+        }
+    }
+
+
+    public RenderPipeline (View view, int[] colourTable, int iterators, int colourers, int encoders) {
+        // Construct a pipeline rendering < view >, coloured by < colourTable >, see Mandelbrot.getColourTable(), with the given number of threads for each stage.
+
+        this.view = view;
+        this.colourTable = colourTable;
+        this.iterate = new Stage("iterate", iterators);
+        this.colour = new Stage("colour", colourers);
+        this.encode = new Stage("encode", encoders);
+    }
+
+    public List<Stage> getStages() {
+        return List.of(iterate, colour, encode);
+    }
+
+    public Stage getBottleneck (long nanos) {
+        // Returns the stage whose threads were busy for the largest share of a run of < nanos > nanoseconds.
+
+        Stage slowest = iterate;
+
+        for (Stage stage : getStages()) {
+            if (stage.getUtilisation(nanos) > slowest.getUtilisation(nanos)) {
+                slowest = stage;
+            }
+        }
+
+        return slowest;
+    }
+
+    public void render (File file, int level) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            render(output, level);
+        }
+    }
+
+    public void render (OutputStream output, int level) throws IOException {
+        // Renders the view and writes it to < output > as a .png image compressed at the deflate < level >, returning once the whole image is written.
+
+        int size = view.getSize();
+        PngWriter.Encoder encoder = new PngWriter.Encoder(size, size, false, level, output);
+
+        List<Tile> tiles = new ArrayList<>();
+        Map<Integer, Band> bands = new ConcurrentHashMap<>();
+
+        int count = (size + TILESIZE - 1) / TILESIZE;
+
+        for (int y = 0; y < size; y += TILESIZE) {
+            int h = Math.min(TILESIZE, size - y);
+
+            for (int x = 0; x < size; x += TILESIZE) {
+                tiles.add(new Tile(x, y, Math.min(TILESIZE, size - x), h));
+            }
+        }
+        // The tiles are listed band by band from the top. Every pixel is computed, since the rows mirrored by conjugate symmetry may be encoded before the rows they mirror are done.
+
+        BlockingQueue<RenderedTile> iterated = new ArrayBlockingQueue<>(QUEUE_FACTOR * colour.threads);
+        BlockingQueue<RenderedTile> coloured = new ArrayBlockingQueue<>(QUEUE_FACTOR * encode.threads);
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        create(threads, iterate, null, iterated, colour.threads, error, in -> {
+            int i = next.getAndIncrement();
+            return i < tiles.size() ? new RenderedTile(tiles.get(i), view.iterate(tiles.get(i)), null) : END;
+        });
+
+        create(threads, colour, iterated, coloured, encode.threads, error, in -> {
+            int[] values = in.values;
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = colourTable[values[i]];
+            }
+
+            int y = in.tile.getY();
+            return new RenderedTile(in.tile, values, bands.computeIfAbsent(y, k -> new Band(y, in.tile.getHeight(), size, count)));
+            // A band is allocated when its first tile is coloured and dropped once it is encoded, so only the bands in flight take up memory.
+        });
+
+        create(threads, encode, coloured, null, 0, error, in -> {
+            Tile tile = in.tile;
+            Band band = in.band;
+
+            for (int y = 0; y < tile.getHeight(); y++) {
+                System.arraycopy(in.values, y * tile.getWidth(), band.colours, y * band.width + tile.getX(), tile.getWidth());
+            }
+
+            if (band.missing.decrementAndGet() == 0) {
+                bands.remove(band.y);
+                encoder.write(band.y, band.y + band.height, (y, row) -> System.arraycopy(band.colours, (y - band.y) * band.width, row, 0, band.width));
+                // The thread adding the last tile of a band compresses it, and the encoder writes the bands in order.
+            }
+
+            return null;
+        });
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        // Every thread exists before any of them starts, so a thread failing at once interrupts the whole pipeline.
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                threads.forEach(Thread::interrupt);
+                Thread.currentThread().interrupt();
+                throw new IOException("Error: The render was interrupted.", e);
+            }
+        }
+
+        if (error.get() != null) {
+            throw new IOException("Error: The render failed: " + error.get().getMessage(), error.get());
+        }
+
+        encoder.finish();
+    }
+
+    private interface Task {
+        RenderedTile apply (RenderedTile in) throws IOException;
+        // Processes a tile taken from the input queue, or produces one for the first stage, whose input is null. The first stage returns END once it runs out of tiles.
+    }
+
+    private static void create (List<Thread> threads, Stage stage, BlockingQueue<RenderedTile> input, BlockingQueue<RenderedTile> output, int consumers, AtomicReference<Throwable> error, Task task) {
+        // Adds the threads of < stage > to < threads >, which take tiles from < input > until they reach END and put the results of < task > into < output >. The last thread of the stage to finish puts an END into < output > for each of the < consumers > taking from it. If any thread fails, every thread of the pipeline is interrupted.
+
+        AtomicInteger running = new AtomicInteger(stage.threads);
+
+        for (int t = 0; t < stage.threads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (error.get() == null) {
+                        // A thread started after another one failed, and thereby missed its interrupt, stops here instead of waiting for input forever.
+
+                        long t1 = System.nanoTime();
+                        RenderedTile in = input == null ? null : input.take();
+                        long t2 = System.nanoTime();
+                        stage.starved.addAndGet(t2 - t1);
+
+                        if (in == END) {
+                            break;
+                        }
+
+                        RenderedTile out = task.apply(in);
+                        long t3 = System.nanoTime();
+                        stage.busy.addAndGet(t3 - t2);
+
+                        if (out == END) {
+                            break;
+                        }
+
+                        stage.items.incrementAndGet();
+
+                        if (output != null) {
+                            output.put(out);
+                            stage.blocked.addAndGet(System.nanoTime() - t3);
+                        }
+                    }
+
+                    if (running.decrementAndGet() == 0 && output != null && error.get() == null) {
+                        for (int i = 0; i < consumers; i++) {
+                            output.put(END);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Another thread failed and stopped the pipeline.
+                } catch (Throwable e) {
+                    if (error.compareAndSet(null, e)) {
+                        threads.forEach(Thread::interrupt);
+                    }
+                }
+            }, "pipeline-" + stage.name + "-" + t);
+
+            threads.add(thread);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+public class RenderScheduler {
+    // Shares the rendering threads of one process between many tenants, e.g. the clients of a RenderDaemon. Every render is admitted as a job of a priority class, interactive or batch, and its tiles are run one at a time by a fixed set of threads, which pick the next tile after every tile they finish.
+    // Interactive tiles go before batch tiles, so a preview arriving during a gigapixel render waits for at most one tile per thread, while every BATCH_SHARE-th tile still goes to batch work, such that big jobs keep progressing. Within a class, the next tile goes to the tenant that has used the least thread time, and a tenant's jobs run in the order they were admitted.
+    // Jobs are admitted on their estimated memory, the pixels of the view times the rasters the caller holds for it, and wait while the memory of the running jobs, and the memory retained by finished jobs for their callers, would exceed the budget. Retained memory is reclaimed from the least recently used caller when a waiting job needs it, so idle callers cannot keep the budget to themselves. Interactive jobs whose estimated iteration cost exceeds the interactive limit are demoted to batch, so a large render cannot claim interactive priority.
+
+    public enum Priority { INTERACTIVE, BATCH }
+
+    private static final int BATCH_SHARE = 8;
+    // Constant class field for how often a tile goes to batch work while interactive work is waiting, here every 8th tile.
+
+    private static final int PREVIEW_SIZE = 32;
+    // Constant class field for the width and height of the preview the iteration cost of a job is estimated from.
+
+    private final long memoryBudget;
+    private final double interactiveCost;
+    // The memory all admitted jobs together may hold, in bytes, and the largest estimated iteration cost of an interactive job.
+
+    private long memoryUsed = 0;
+    private long picks = 0;
+    private final ArrayDeque<Job> waiting = new ArrayDeque<>();
+    private final ArrayDeque<Job> idle = new ArrayDeque<>();
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    // The memory held by the admitted jobs, the number of tiles handed out, the jobs waiting for memory in order of arrival, the retained jobs from the least recently retained, see Job.retain(), and the tenants with admitted jobs, all guarded by the scheduler.
+
+    private static class Tenant {
+        // A tenant with its admitted jobs of each class and the thread time, in nanoseconds, its tiles have used in each class.
+
+        final ArrayDeque<Job> interactive = new ArrayDeque<>(), batch = new ArrayDeque<>();
+        final long[] used = new long[2];
+
+        ArrayDeque<Job> jobs (Priority priority) {
+            return priority == Priority.INTERACTIVE ? interactive : batch;
+        }
+    }
+
+    public class Job implements AutoCloseable {
+        // An admitted render, holding its share of the memory budget until it is closed. The tiles given to run() are computed by the threads of the scheduler.
+
+        private final String tenant;
+        private final Priority priority;
+        private final double cost;
+        private final Job replaces;
+        private long memory;
+
+        private final ArrayDeque<Tile> tiles = new ArrayDeque<>();
+        private Consumer<Tile> task;
+        private int running = 0;
+        private RuntimeException error;
+        private Runnable reclaim;
+        private boolean admitted = false, retained = false, closed = false;
+        // The tiles of the current call to run(), the task they are passed to, the number of them being computed, the first failure and the callback freeing the memory of a retained job, all guarded by the scheduler.
+
+        private Job (String tenant, Priority priority, long memory, double cost, Job replaces) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.memory = memory;
+            this.cost = cost;
+            this.replaces = replaces;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        public void run (List<Tile> tiles, Consumer<Tile> task) {
+            // Runs < task > on every tile of < tiles > on the threads of the scheduler, and returns once all of them are done. A failure of the task is thrown here once the running tiles are done, and the remaining tiles are dropped.
+
+            synchronized (RenderScheduler.this) {
+                if (closed || retained) {
+                    throw new IllegalStateException("The job is " + (closed ? "closed." : "retained."));
+                }
+
+                this.tiles.addAll(tiles);
+                this.task = task;
+                this.error = null;
+                RenderScheduler.this.notifyAll();
+
+                try {
+                    while (!this.tiles.isEmpty() || running > 0) {
+                        RenderScheduler.this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    this.tiles.clear();
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("The render was interrupted.");
+                    // The tiles already being computed finish on their own, but no new ones are started.
+                }
+
+                if (error != null) {
+                    throw error;
+                }
+            }
+        }
+
+        public void retain (long memory, Runnable reclaim) {
+            // Ends the render of the job but keeps < memory > bytes of its share, e.g. for a raster the caller keeps for its next render, and releases the rest. The memory stays charged until the job is closed, replaced by a later job, see admit(), or reclaimed for a waiting job that does not fit otherwise.
+            // A reclaimed job is closed and < reclaim > is run, which must free the memory, e.g. drop the raster. It is run while holding the scheduler, so it must not wait for a lock held by a thread that waits for the scheduler.
+
+            synchronized (RenderScheduler.this) {
+                if (closed || retained) {
+                    return;
+                }
+
+                tiles.clear();
+                retained = true;
+                this.reclaim = reclaim;
+                idle.add(this);
+                memoryUsed -= this.memory - Math.min(memory, this.memory);
+                this.memory = Math.min(memory, this.memory);
+                removeJob(this);
+                // A retained job runs no more tiles, so its tenant need not be kept for it.
+
+                admitWaiting();
+            }
+        }
+
+        @Override
+        public void close () {
+            // Releases the memory of the job and removes it from the scheduler, such that waiting jobs may be admitted.
+
+            synchronized (RenderScheduler.this) {
+                if (closed) {
+                    return;
+                }
+
+                release(this);
+                admitWaiting();
+                RenderScheduler.this.notifyAll();
+            }
+        }
+    }
+
+    public RenderScheduler (int threads, long memoryBudget, double interactiveCost) {
+        // Construct a scheduler running tiles on < threads > daemon threads, admitting jobs within < memoryBudget > bytes and treating jobs of an estimated cost above < interactiveCost > iterations as batch jobs.
+
+        this.memoryBudget = memoryBudget;
+        this.interactiveCost = interactiveCost;
+
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(this::work, "render-scheduler-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public Job admit (String tenant, Priority priority, View view, int rasters) throws InterruptedException {
+        // Returns a job of < tenant > for rendering < view >, see admit(String, Priority, View, int, Job).
+        return admit(tenant, priority, view, rasters, null);
+    }
+
+    public Job admit (String tenant, Priority priority, View view, int rasters, Job replaces) throws InterruptedException {
+        // Returns a job of < tenant > for rendering < view >, once the < rasters > rasters of 4 bytes per pixel the caller holds for it fit into the memory budget. Jobs that can never fit are rejected with a RejectedExecutionException, and interactive jobs above the interactive cost are demoted to batch.
+        // The job < replaces >, which may be null, is closed as the new job is admitted, and its memory counts as free for the new job, e.g. the retained raster of the previous render of a connection, which the new render reuses. Memory held by a caller is thereby charged at all times, without the caller blocking itself out of the budget.
+
+        long memory = 4L * view.getSize() * view.getSize() * rasters;
+
+        if (memory > memoryBudget) {
+            throw new RejectedExecutionException("The render needs " + (memory >> 20) + " MB, more than the budget of " + (memoryBudget >> 20) + " MB.");
+        }
+
+        double cost = estimateCost(view);
+        Job job = new Job(tenant, priority == Priority.INTERACTIVE && cost > interactiveCost ? Priority.BATCH : priority, memory, cost, replaces);
+
+        synchronized (this) {
+            waiting.add(job);
+            admitWaiting();
+
+            try {
+                while (!job.admitted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                job.close();
+                throw e;
+                // The job may have been admitted just as the thread was interrupted, so its memory is released as well.
+            }
+        }
+
+        return job;
+    }
+
+    static double estimateCost (View view) {
+        // Returns the estimated number of iterations of < view >, from a preview of at most PREVIEW_SIZE by PREVIEW_SIZE pixels.
+
+        int size = Math.min(PREVIEW_SIZE, view.getSize());
+        View preview = new View(view.getCenter(), view.getSidelength(), size, view.getKernel(), view.getMax());
+        double sum = 0;
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                sum += preview.iterate(x, y) + 1;
+            }
+        }
+
+        return sum / (size * size) * view.getSize() * view.getSize();
+    }
+
+    private void admitWaiting () {
+        // Admits waiting jobs while they fit into the memory budget, interactive jobs first and otherwise in order of arrival. A job that does not fit holds up the later jobs of its class, and an interactive job that does not fit holds up every batch job, so small jobs cannot keep a large or more urgent one waiting forever. Called while holding the scheduler.
+
+        for (Priority priority : Priority.values()) {
+            boolean blocked = false;
+
+            for (Job job : new ArrayList<>(waiting)) {
+                if (job.priority != priority) {
+                    continue;
+                }
+
+                long released = job.replaces != null && job.replaces.admitted && !job.replaces.closed ? job.replaces.memory : 0;
+
+                if (memoryUsed - released + job.memory > memoryBudget && !reclaim(job, released)) {
+                    blocked = true;
+                    break;
+                }
+
+                if (released > 0) {
+                    release(job.replaces);
+                }
+
+                waiting.remove(job);
+                memoryUsed += job.memory;
+                job.admitted = true;
+
+                Tenant tenant = tenants.computeIfAbsent(job.tenant, k -> new Tenant());
+
+                if (tenant.jobs(priority).isEmpty()) {
+                    tenant.used[priority.ordinal()] = Math.max(tenant.used[priority.ordinal()], leastUsed(priority));
+                    // A tenant becoming active again starts level with the others, instead of claiming the time it did not use while idle.
+                }
+
+                tenant.jobs(priority).add(job);
+            }
+
+            if (blocked) {
+                break;
+            }
+        }
+
+        notifyAll();
+    }
+
+    private boolean reclaim (Job job, long released) {
+        // Reclaims retained jobs, from the least recently retained, until < job > fits into the memory budget with < released > bytes of its own retained job freed for it. Returns whether it fits. Nothing is reclaimed if even reclaiming every retained job would not make it fit. Called while holding the scheduler.
+
+        long reclaimable = 0;
+
+        for (Job other : idle) {
+            reclaimable += other == job.replaces ? 0 : other.memory;
+        }
+
+        if (memoryUsed - released - reclaimable + job.memory > memoryBudget) {
+            return false;
+            // The job waits for running jobs to finish, and idle connections keep their memory until then.
+        }
+
+        for (Job other : new ArrayList<>(idle)) {
+            if (memoryUsed - released + job.memory <= memoryBudget) {
+                break;
+            }
+
+            if (other != job.replaces) {
+                release(other);
+                other.reclaim.run();
+            }
+        }
+
+        return true;
+    }
+
+    private void release (Job job) {
+        // Closes < job >, releasing its memory if it was admitted and removing it from the jobs waiting otherwise. Called while holding the scheduler.
+
+        job.closed = true;
+        job.tiles.clear();
+
+        if (!job.admitted) {
+            waiting.remove(job);
+            return;
+        }
+
+        memoryUsed -= job.memory;
+
+        if (job.retained) {
+            idle.remove(job);
+        } else {
+            removeJob(job);
+        }
+    }
+
+    private void removeJob (Job job) {
+        // Removes < job > from its tenant, and the tenant itself once it has no jobs left, such that the map only holds the tenants with admitted jobs. A tenant returning later starts level with the others, see admitWaiting(), so its used time need not be kept. Called while holding the scheduler.
+
+        Tenant tenant = tenants.get(job.tenant);
+        tenant.jobs(job.priority).remove(job);
+
+        if (tenant.interactive.isEmpty() && tenant.batch.isEmpty()) {
+            tenants.remove(job.tenant);
+        }
+    }
+
+    private long leastUsed (Priority priority) {
+        // Returns the least thread time used by a tenant with runnable jobs of < priority >, or 0 if there is none.
+
+        long least = Long.MAX_VALUE;
+
+        for (Tenant tenant : tenants.values()) {
+            if (!tenant.jobs(priority).isEmpty()) {
+                least = Math.min(least, tenant.used[priority.ordinal()]);
+            }
+        }
+
+        return least == Long.MAX_VALUE ? 0 : least;
+    }
+
+    private Job next (Priority priority) {
+        // Returns the oldest job with tiles left of the tenant with the least used time in < priority >, or null if no job of the class has tiles left. Called while holding the scheduler.
+
+        Job best = null;
+        long least = Long.MAX_VALUE;
+
+        for (Tenant tenant : tenants.values()) {
+            for (Job job : tenant.jobs(priority)) {
+                if (!job.tiles.isEmpty()) {
+                    if (tenant.used[priority.ordinal()] < least) {
+                        best = job;
+                        least = tenant.used[priority.ordinal()];
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private void work () {
+        // Runs tiles for as long as the process lives, picking the job of every tile anew, such that interactive work preempts batch work at the next tile.
+
+        while (true) {
+            Job job;
+            Tile tile;
+            Consumer<Tile> task;
+
+            synchronized (this) {
+                while (true) {
+                    Job interactive = next(Priority.INTERACTIVE), batch = next(Priority.BATCH);
+                    job = interactive != null && (batch == null || ++picks % BATCH_SHARE != 0) ? interactive : batch;
+
+                    if (job != null) {
+                        break;
+                    }
+
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                tile = job.tiles.poll();
+                task = job.task;
+                job.running++;
+            }
+
+            long t1 = System.nanoTime();
+            RuntimeException error = null;
+
+            try {
+                task.accept(tile);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            long t2 = System.nanoTime();
+
+            synchronized (this) {
+                Tenant tenant = tenants.get(job.tenant);
+
+                if (tenant != null) {
+                    tenant.used[job.priority.ordinal()] += t2 - t1;
+                }
+
+                if (error != null && job.error == null) {
+                    job.error = error;
+                    job.tiles.clear();
+                }
+
+                job.running--;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RenderWorker {
+    // A worker process connects to a RenderCoordinator, computes the tiles it is sent on all of its cores and streams the iteration counts back.
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Error: The worker should be called with the arguments: host port");
+            System.exit(-1);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(cores);
+
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            output.writeInt(cores);
+            output.flush();
+            // The coordinator sizes the number of tiles in flight from the number of cores.
+
+            Complex center = new Complex(input.readDouble(), input.readDouble());
+            double sidelength = input.readDouble();
+            int size = input.readInt();
+            Kernel kernel = Kernel.parse(input.readUTF());
+            int max = input.readInt();
+            View view = new View(center, sidelength, size, kernel, max);
+            // The view is received once at the start of the conversation.
+
+            System.out.println("Rendering " + view + ".");
+
+            while (true) {
+                int id = input.readInt();
+
+                if (id < 0) {
+                    break;
+                    // A negative id means the render is complete.
+                }
+
+                Tile tile = new Tile(input.readInt(), input.readInt(), input.readInt(), input.readInt());
+
+                pool.execute(() -> {
+                    int[] iterations = view.iterate(tile);
+                    ByteBuffer buffer = ByteBuffer.allocate(iterations.length * 4);
+                    buffer.asIntBuffer().put(iterations);
+
+                    try {
+                        synchronized (output) {
+                            output.writeInt(id);
+                            output.writeInt(buffer.capacity());
+                            output.write(buffer.array());
+                            output.flush();
+                        }
+                        // Results are written whole by one thread at a time, in whatever order the tiles finish.
+
+                    } catch (IOException e) {
+                        System.out.println("Error: Lost the connection to the coordinator.");
+                        System.exit(-1);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("Render complete.");
+    }
+}
@@ -879,6 +879,59 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     }
 
 
+   /*************************************************************************
+    *  Drawing blocks of pixels.
+    *************************************************************************/
+
+    /**
+     * Copy a w-by-h block of ARGB pixels, stored row by row, into the canvas
+     * with its top left corner at the pixel (x, y). Pixel coordinates count
+     * from the top left corner of the canvas and ignore the user scale.
+     * Only the block is repainted, unless drawing is deferred by show(int).
+     * @param x the column of the left edge of the block
+     * @param y the row of the top edge of the block
+     * @param w the width of the block in pixels
+     * @param h the height of the block in pixels
+     * @param argb the pixels of the block
+     */
+    public static void pixels(int x, int y, int w, int h, int[] argb) {
+        pixels(x, y, w, h, argb, 0, w);
+    }
+
+    /**
+     * Copy a w-by-h block of ARGB pixels into the canvas with its top left
+     * corner at the pixel (x, y), reading row r of the block from
+     * argb[offset + r * scansize]. Parts of the block outside the canvas
+     * are clipped.
+     * @param x the column of the left edge of the block
+     * @param y the row of the top edge of the block
+     * @param w the width of the block in pixels
+     * @param h the height of the block in pixels
+     * @param argb the pixels of the block
+     * @param offset the index of the top left pixel of the block in argb
+     * @param scansize the distance between two rows of the block in argb
+     */
+    public static void pixels(int x, int y, int w, int h, int[] argb, int offset, int scansize) {
+        int x0 = Math.max(x, 0), y0 = Math.max(y, 0);
+        int x1 = Math.min(x + w, width), y1 = Math.min(y + h, height);
+        if (x0 >= x1 || y0 >= y1) return;
+
+        // the canvas is TYPE_INT_ARGB, so its raster is a single int[] and each row is one copy
+        int[] canvas = ((DataBufferInt) offscreenImage.getRaster().getDataBuffer()).getData();
+        for (int row = y0; row < y1; row++) {
+            System.arraycopy(argb, offset + (row - y) * scansize + (x0 - x), canvas, row * width + x0, x1 - x0);
+        }
+        draw(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    // draw the dirty rectangle onscreen if defer is false
+    private static void draw(int x, int y, int w, int h) {
+        if (defer) return;
+        onscreen.drawImage(offscreenImage, x, y, x + w, y + h, x, y, x + w, y + h, null);
+        frame.getContentPane().repaint(x, y, w, h);
+    }
+
+
    /*************************************************************************
     *  Save drawing to a file.
     *************************************************************************/
@@ -893,7 +946,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 
         // png files
         if (suffix.toLowerCase().equals("png")) {
-            try { ImageIO.write(onscreenImage, suffix, file); }
+            try { PngWriter.write(onscreenImage, file, PngWriter.DEFAULT); }
             catch (IOException e) { e.printStackTrace(); }
         }
 
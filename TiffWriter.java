@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+public class TiffWriter implements AutoCloseable {
+    // Writes tiled BigTIFF images, which unlike .png files need not be written in row order. The header and the tables of tile offsets are written first, and every render thread then writes its finished tiles straight to their place in the file through positional FileChannel writes, so huge images are written concurrently, without holding them in memory and without a final pass to put them together.
+    // Uncompressed files are preallocated with every tile at a fixed offset. Deflated tiles have sizes that are not known in advance, so each tile reserves the next free range at the end of the file and records its offset and length in the tables itself. BigTIFF uses 64-bit offsets, so the file may exceed 4 GB.
+
+    public static final int TILESIZE = 256;
+    // Constant class field for the width and height of the tiles, which TIFF requires to be a multiple of 16.
+
+    private static final int CHANNELS = 3;
+
+    private static final long DIRECTORY = 16;
+    private static final int ENTRIES = 12;
+    private static final int ENTRY_BYTES = 20;
+    // Constant class fields for the position of the image file directory, right after the header, its number of fields and the size of each field.
+
+    private static final int SHORT = 3, LONG = 4, LONG8 = 16;
+    // Constant class fields for the TIFF types of 16, 32 and 64 bit unsigned integers.
+
+    private final FileChannel channel;
+    private final int width, height, level;
+    private final int across, down;
+    // The size of the image, the deflate level, with PngWriter.STORE for uncompressed tiles, and the number of tiles across and down the image.
+
+    private final long offsets, counts, data;
+    // The positions in the file of the table of tile offsets, the table of tile lengths and the first tile. With a single tile, its offset and length are stored in the directory itself.
+
+    private final AtomicLong end;
+    // The end of the data written so far, from which deflated tiles reserve their ranges.
+
+    public TiffWriter (Path file, int width, int height, int level) throws IOException {
+        // Construct a writer of a < width > by < height > RGB image to < file >, with its tiles deflated at < level >, or stored uncompressed with PngWriter.STORE, and write the header and tile tables.
+
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        this.across = (width + TILESIZE - 1) / TILESIZE;
+        this.down = (height + TILESIZE - 1) / TILESIZE;
+
+        long tiles = (long) across * down;
+        long tables = DIRECTORY + 8 + ENTRIES * ENTRY_BYTES + 8;
+        boolean single = tiles == 1;
+
+        this.offsets = single ? DIRECTORY + 8 + 10 * ENTRY_BYTES + 12 : tables;
+        this.counts = single ? DIRECTORY + 8 + 11 * ENTRY_BYTES + 12 : tables + 8 * tiles;
+        this.data = single ? tables : tables + 16 * tiles;
+        this.end = new AtomicLong(data);
+        // A single offset and length fit into the 8 byte values of the last two fields of the directory, which BigTIFF then requires them to be stored in.
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate((int) tables).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(DIRECTORY);
+        // Little-endian BigTIFF with 8 byte offsets.
+
+        header.putLong(ENTRIES);
+        field(header, 256, LONG, 1, width);
+        field(header, 257, LONG, 1, height);
+        field(header, 258, SHORT, 3, 8L | 8L << 16 | 8L << 32);
+        field(header, 259, SHORT, 1, level == PngWriter.STORE ? 1 : 8);
+        field(header, 262, SHORT, 1, 2);
+        field(header, 277, SHORT, 1, CHANNELS);
+        field(header, 284, SHORT, 1, 1);
+        field(header, 317, SHORT, 1, level == PngWriter.STORE ? 1 : 2);
+        field(header, 322, LONG, 1, TILESIZE);
+        field(header, 323, LONG, 1, TILESIZE);
+        field(header, 324, LONG8, tiles, single ? 0 : offsets);
+        field(header, 325, LONG8, tiles, single ? 0 : counts);
+        header.putLong(0);
+        // Width, length, 8 bits per sample, compression, RGB, 3 samples per pixel, interleaved samples, predictor, tile width, tile length, tile offsets and tile lengths, sorted by tag as TIFF requires, and no further directories.
+
+        write(header.flip(), 0);
+
+        if (level == PngWriter.STORE) {
+            for (long i = 0; i < tiles; i++) {
+                record(i, data + i * tileBytes(), tileBytes());
+            }
+
+            end.set(data + tiles * tileBytes());
+            write(ByteBuffer.allocate(1), end.get() - 1);
+            // The file is extended to its full size at once, so the tiles are written into space that already exists.
+        }
+    }
+
+    public List<Tile> getTiles() {
+        // Returns the tiles of the image, each to be passed to write(Tile, int[]) exactly once, in any order and from any thread.
+
+        List<Tile> tiles = new ArrayList<>();
+
+        for (int y = 0; y < height; y += TILESIZE) {
+            for (int x = 0; x < width; x += TILESIZE) {
+                tiles.add(new Tile(x, y, Math.min(TILESIZE, width - x), Math.min(TILESIZE, height - y)));
+            }
+        }
+
+        return tiles;
+    }
+
+    public void write (Tile tile, int[] colours) throws IOException {
+        // Writes the RGB < colours > of < tile >, one of getTiles(), stored row by row, to its place in the file. Safe to call concurrently for different tiles.
+
+        if (tile.getX() % TILESIZE != 0 || tile.getY() % TILESIZE != 0) {
+            throw new IllegalArgumentException("The tile " + tile + " is not one of the tiles of the image.");
+        }
+
+        long index = (long) (tile.getY() / TILESIZE) * across + tile.getX() / TILESIZE;
+        byte[] raw = new byte[tileBytes()];
+        // Tiles on the right and bottom edges are padded to the full tile size, as TIFF requires.
+
+        boolean predict = level != PngWriter.STORE;
+
+        for (int y = 0; y < tile.getHeight(); y++) {
+            int previous = 0;
+            int offset = y * TILESIZE * CHANNELS;
+
+            for (int x = 0; x < tile.getWidth(); x++) {
+                int pixel = colours[y * tile.getWidth() + x];
+
+                raw[offset++] = (byte) ((pixel >>> 16) - (previous >>> 16));
+                raw[offset++] = (byte) ((pixel >>> 8) - (previous >>> 8));
+                raw[offset++] = (byte) (pixel - previous);
+                // Deflated tiles store each sample as the difference to the same sample of the pixel to the left, the TIFF horizontal predictor. Only the lowest 8 bits of each difference are kept.
+
+                previous = predict ? pixel : 0;
+            }
+        }
+
+        if (!predict) {
+            write(ByteBuffer.wrap(raw), data + index * raw.length);
+            return;
+        }
+
+        byte[] compressed = deflate(raw);
+        long position = end.getAndAdd(compressed.length);
+        // The tile reserves a range at the end of the file, which no other tile can take.
+
+        write(ByteBuffer.wrap(compressed), position);
+        record(index, position, compressed.length);
+    }
+
+    private void record (long index, long position, long length) throws IOException {
+        // Writes the offset and length of tile < index > into the tables.
+
+        write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, position), offsets + 8 * index);
+        write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, length), counts + 8 * index);
+    }
+
+    private byte[] deflate (byte[] raw) {
+        // Returns < raw > as a zlib stream, the form of deflate TIFF expects.
+
+        Deflater deflater = new Deflater(level);
+        deflater.setInput(raw);
+        deflater.finish();
+
+        byte[] buffer = new byte[raw.length + (raw.length >> 3) + 64];
+        int length = 0;
+
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static int tileBytes () {
+        return TILESIZE * TILESIZE * CHANNELS;
+    }
+
+    private void write (ByteBuffer buffer, long position) throws IOException {
+        // Writes all of < buffer > at < position >, which FileChannel allows from several threads at once.
+
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void field (ByteBuffer buffer, int tag, int type, long count, long value) {
+        // Appends a directory field of < count > values of < type >, whose values fit into the 8 bytes of < value > or are stored at the offset < value >.
+        buffer.putShort((short) tag).putShort((short) type).putLong(count).putLong(value);
+    }
+
+    @Override
+    public void close () throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,34 @@
+public class Tile {
+    private final int x, y, width, height;
+    // The pixel position of the top-left corner of the tile within its view, and the dimensions of the tile in pixels.
+
+    public Tile (int x, int y, int width, int height) {
+        // Construct a tile covering the pixels from (x, y) to (x + width - 1, y + height - 1).
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        // Returns the tile as "x y width height".
+        return x + " " + y + " " + width + " " + height;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TilePublisher implements Flow.Publisher<TilePublisher.RenderedTile> {
+    // Publishes the tiles of a view as they are finished, for progressive displays and streaming. Tiles are only computed while the subscriber has requested more of them, so a slow subscriber slows down the render instead of letting finished tiles pile up in memory.
+    // Every subscriber receives a render of its own, with the most expensive tiles first, as ordered by the TileScheduler.
+
+    private static final int TILESIZE = 128;
+    // Constant class field for the width and height of the published tiles.
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private final View view;
+    private final int[] colourTable;
+    private final Executor executor;
+
+    public static class RenderedTile {
+        // A finished tile with the iteration count and RGB colour of each of its pixels, stored row by row from the top-left corner of the tile.
+
+        private final Tile tile;
+        private final int[] iterations, colours;
+
+        RenderedTile (Tile tile, int[] iterations, int[] colours) {
+            this.tile = tile;
+            this.iterations = iterations;
+            this.colours = colours;
+        }
+
+        public Tile getTile() {
+            return tile;
+        }
+
+        public int[] getIterations() {
+            return iterations;
+        }
+
+        public int[] getColours() {
+            return colours;
+        }
+    }
+
+    public TilePublisher (View view, int[] colourTable) {
+        // Construct a publisher of the tiles of < view >, coloured by < colourTable >, see Mandelbrot.getColourTable(), rendered on the common fork/join pool.
+        this(view, colourTable, ForkJoinPool.commonPool());
+    }
+
+    public TilePublisher (View view, int[] colourTable, Executor executor) {
+        // Construct a publisher of the tiles of < view >, coloured by < colourTable >, rendered by tasks run on < executor >.
+        this.view = view;
+        this.colourTable = colourTable;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe (Flow.Subscriber<? super RenderedTile> subscriber) {
+        int[] mirrors = new int[view.getSize()];
+        Arrays.fill(mirrors, -1);
+        // Every row is computed, since a published tile must be complete on its own.
+
+        subscriber.onSubscribe(new Subscription(subscriber, TileScheduler.schedule(view, mirrors)));
+    }
+
+    private class Subscription implements Flow.Subscription {
+        // The render of a single subscriber. Up to one task per core computes tiles, each task claiming one unit of the requested demand per tile, and the tasks stop whenever the demand is used up.
+
+        private final Flow.Subscriber<? super RenderedTile> subscriber;
+        private final List<Tile> tiles;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        // The number of tiles requested but not yet claimed, the index of the next tile to compute and the number of running tasks.
+
+        private int delivered = 0;
+        private volatile boolean done = false;
+        // The number of tiles passed to the subscriber, guarded by the subscription, and whether the subscription was cancelled or ended.
+
+        Subscription (Flow.Subscriber<? super RenderedTile> subscriber, List<Tile> tiles) {
+            this.subscriber = subscriber;
+            this.tiles = tiles;
+        }
+
+        @Override
+        public void request (long n) {
+            if (done) {
+                return;
+            }
+
+            if (n <= 0) {
+                fail(new IllegalArgumentException("The number of requested tiles must be positive."));
+                return;
+            }
+
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            // The demand saturates at Long.MAX_VALUE, which means unbounded.
+
+            start();
+        }
+
+        @Override
+        public void cancel () {
+            done = true;
+        }
+
+        private void start () {
+            // Starts tasks until there is one per core or one per outstanding tile, whichever is fewer.
+
+            while (!done && demand.get() > 0 && next.get() < tiles.size()) {
+                int running = active.get();
+
+                if (running >= THREADS) {
+                    return;
+                }
+
+                if (active.compareAndSet(running, running + 1)) {
+                    executor.execute(this::run);
+                }
+            }
+        }
+
+        private void run () {
+            // Computes and delivers tiles while there is demand, then checks for demand which arrived while the task was stopping.
+
+            try {
+                while (!done && claim()) {
+                    int i = next.getAndIncrement();
+
+                    if (i >= tiles.size()) {
+                        return;
+                    }
+
+                    Tile tile = tiles.get(i);
+                    int[] iterations = view.iterate(tile);
+                    int[] colours = new int[iterations.length];
+
+                    for (int p = 0; p < iterations.length; p++) {
+                        colours[p] = colourTable[iterations[p]];
+                    }
+
+                    deliver(new RenderedTile(tile, iterations, colours));
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                active.decrementAndGet();
+                start();
+                // A request arriving just as this task stopped may have seen it as still running, so the demand is checked again.
+            }
+        }
+
+        private boolean claim () {
+            // Takes one unit of demand, returning false if there is none.
+
+            while (true) {
+                long d = demand.get();
+
+                if (d == 0) {
+                    return false;
+                }
+
+                if (d == Long.MAX_VALUE || demand.compareAndSet(d, d - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private synchronized void deliver (RenderedTile tile) {
+            // Passes < tile > to the subscriber, one at a time as required by Flow, and completes the subscription after the last tile.
+
+            if (done) {
+                return;
+            }
+
+            subscriber.onNext(tile);
+
+            if (++delivered == tiles.size()) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+
+        private synchronized void fail (Throwable error) {
+            // Ends the subscription with < error >, unless it has already ended.
+
+            if (!done) {
+                done = true;
+                subscriber.onError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+public class TileScheduler {
+    // Renders the tiles of a view on all cores, ordered by their estimated cost. The cost of every tile is estimated from a coarse preview of the view, the most expensive tiles are dispatched first and tiles that are expensive compared to the total are split further, so no core is left with a single slow tile at the end of a render.
+
+    private static final int TILESIZE = 128;
+    // Constant class field for the width and height of the tiles before splitting.
+
+    private static final int MIN_TILESIZE = 16;
+    // Constant class field for the smallest width and height a tile is split into.
+
+    private static final int PREVIEW_DIVISOR = 8;
+    // Constant class field for how much coarser the preview is than the view along each side, such that the preview costs about 1/64 of the render.
+
+    private static final int SPLIT_FACTOR = 4;
+    // Constant class field determining when a tile is split: a tile is split if it costs more than 1 / (SPLIT_FACTOR * cores) of the whole render.
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "tile-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Class field for the threads rendering tiles, shared by every render in the process.
+
+    public interface TileConsumer {
+        void accept (Tile tile, int[] iterations);
+        // Receives the iteration counts of a finished tile, stored row by row. Called concurrently from the rendering threads.
+    }
+
+
+    public static boolean render (View view, int[] mirrors, BooleanSupplier cancelled, TileConsumer consumer) {
+        // Renders every tile of < view > and passes it to < consumer >, skipping the rows with a mirror row, see View.mirrors(). The remaining tiles are abandoned once < cancelled > returns true. Returns true if every tile was rendered.
+        return render(view, mirrors, tile -> false, cancelled, consumer);
+    }
+
+    public static boolean render (View view, int[] mirrors, Predicate<Tile> finished, BooleanSupplier cancelled, TileConsumer consumer) {
+        // Renders the tiles of < view > like render(View, int[], BooleanSupplier, TileConsumer), except that the tiles for which < finished > returns true are skipped, e.g. when resuming a render from a Checkpoint.
+        return run(view, mirrors, finished, cancelled, tile -> consumer.accept(tile, view.iterate(tile, mirrors)));
+    }
+
+    public static boolean run (View view, int[] mirrors, Predicate<Tile> finished, BooleanSupplier cancelled, Consumer<Tile> task) {
+        // Runs < task > on every tile of < view > in order of decreasing estimated cost, for renderers which compute their tiles in their own way, e.g. DistanceEstimator. Skipping, cancelling and the return value are as for render(View, int[], Predicate, BooleanSupplier, TileConsumer).
+
+        List<Tile> tiles = schedule(view, mirrors);
+        tiles.removeIf(finished);
+        return run(tiles, cancelled, task);
+    }
+
+    public static boolean run (List<Tile> tiles, BooleanSupplier cancelled, Consumer<Tile> task) {
+        // Runs < task > on every tile of < tiles > in the given order on all cores, e.g. the exposed strips of a PanBuffer. Returns true if every tile was run before < cancelled > returned true. If < task > fails, no further tiles are started and the first failure is thrown here once the running tiles are done.
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    int i;
+
+                    while ((i = next.getAndIncrement()) < tiles.size() && error.get() == null) {
+                        if (abandoned.get() || cancelled.getAsBoolean()) {
+                            abandoned.set(true);
+                            return;
+                        }
+
+                        task.accept(tiles.get(i));
+                    }
+                    // Every thread takes the next tile in order of decreasing cost as soon as it finishes its previous one.
+
+                } catch (RuntimeException | Error e) {
+                    error.compareAndSet(null, e);
+                    // The pool would swallow the failure, and the tile would be missing from an image reported as complete.
+
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            Thread.currentThread().interrupt();
+        }
+
+        if (error.get() instanceof RuntimeException e) {
+            throw e;
+        }
+
+        if (error.get() instanceof Error e) {
+            throw e;
+        }
+
+        return !abandoned.get();
+    }
+
+    static List<Tile> schedule (View view, int[] mirrors) {
+        // Returns the tiles of < view >, split where needed and sorted by decreasing estimated cost.
+
+        int size = view.getSize();
+        int previewSize = Math.max(2, size / PREVIEW_DIVISOR);
+        View preview = new View(view.getCenter(), view.getSidelength(), previewSize, view.getKernel(), view.getMax());
+
+        int[] costs = new int[previewSize * previewSize];
+
+        IntStream.range(0, previewSize).parallel().forEach(y -> {
+            for (int x = 0; x < previewSize; x++) {
+                costs[y * previewSize + x] = preview.iterate(x, y) + 1;
+                // A pixel costs its number of iterations plus the overhead of setting it up.
+            }
+        });
+
+        List<Tile> tiles = new ArrayList<>();
+        List<Double> estimates = new ArrayList<>();
+        double total = 0;
+
+        for (Tile tile : view.tiles(TILESIZE)) {
+            total += estimate(tile, costs, previewSize, size, mirrors);
+        }
+
+        double limit = total / (SPLIT_FACTOR * THREADS);
+
+        for (Tile tile : view.tiles(TILESIZE)) {
+            split(tile, costs, previewSize, size, mirrors, limit, tiles, estimates);
+        }
+
+        Integer[] order = new Integer[tiles.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (a, b) -> Double.compare(estimates.get(b), estimates.get(a)));
+
+        List<Tile> sorted = new ArrayList<>(tiles.size());
+
+        for (int i : order) {
+            sorted.add(tiles.get(i));
+        }
+
+        return sorted;
+    }
+
+    private static void split (Tile tile, int[] costs, int previewSize, int size, int[] mirrors, double limit, List<Tile> tiles, List<Double> estimates) {
+        // Adds < tile > to < tiles >, or its four quarters if it costs more than < limit > and is large enough to be split.
+
+        double cost = estimate(tile, costs, previewSize, size, mirrors);
+
+        if (cost <= limit || tile.getWidth() < 2 * MIN_TILESIZE || tile.getHeight() < 2 * MIN_TILESIZE) {
+            tiles.add(tile);
+            estimates.add(cost);
+            return;
+        }
+
+        int w = tile.getWidth() / 2, h = tile.getHeight() / 2;
+
+        split(new Tile(tile.getX(), tile.getY(), w, h), costs, previewSize, size, mirrors, limit, tiles, estimates);
+        split(new Tile(tile.getX() + w, tile.getY(), tile.getWidth() - w, h), costs, previewSize, size, mirrors, limit, tiles, estimates);
+        split(new Tile(tile.getX(), tile.getY() + h, w, tile.getHeight() - h), costs, previewSize, size, mirrors, limit, tiles, estimates);
+        split(new Tile(tile.getX() + w, tile.getY() + h, tile.getWidth() - w, tile.getHeight() - h), costs, previewSize, size, mirrors, limit, tiles, estimates);
+    }
+
+    private static double estimate (Tile tile, int[] costs, int previewSize, int size, int[] mirrors) {
+        // Returns the estimated cost of < tile >, i.e. the average cost of the preview pixels it covers times the number of pixels that are actually computed.
+
+        double scale = (double) (previewSize - 1) / (size - 1);
+        // A pixel x of the view lies at x * scale in the preview.
+
+        int x0 = (int) Math.floor(tile.getX() * scale), x1 = (int) Math.ceil((tile.getX() + tile.getWidth() - 1) * scale);
+        int y0 = (int) Math.floor(tile.getY() * scale), y1 = (int) Math.ceil((tile.getY() + tile.getHeight() - 1) * scale);
+
+        double sum = 0;
+
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                sum += costs[y * previewSize + x];
+            }
+        }
+
+        int rows = 0;
+
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            rows += mirrors[y] < 0 ? 1 : 0;
+        }
+
+        return sum / ((x1 - x0 + 1) * (y1 - y0 + 1)) * tile.getWidth() * rows;
+    }
+}
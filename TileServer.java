@@ -0,0 +1,296 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+public class TileServer {
+    private static final int TILESIZE = 256;
+    // Constant class field for the width and height of every tile in pixels.
+
+    private static final Complex ROOT_CENTER = new Complex(-0.5, 0);
+    private static final double ROOT_SIDELENGTH = 4.0;
+    // Constant class fields for the square covered by the single tile at zoom level 0. Every zoom level splits each tile of the previous level into 2 by 2 tiles.
+
+    private static final int MAX_ZOOM = 45;
+    // Constant class field for the deepest zoom level served. From level 46 the pixel spacing of 4 / 2^z / 255 falls below the precision of a double near the set, about 4.4e-16, and neighbouring pixels collapse onto the same coordinates.
+
+    private static final int MAX_ITERATIONS = 10000;
+    // Constant class field for the highest iteration limit a request may ask for. Every limit costs a colour table of max + 1 entries, and a tile costs up to 256 * 256 * max iterations.
+
+    private static final long CACHE_BYTES = 256L * 1024 * 1024;
+    // Constant class field for the total size of the encoded tiles kept in the in-memory cache.
+
+    private static final ExecutorService computePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    // Class field for the bounded pool running the actual iteration work, one thread per core. Requests themselves run on virtual threads, which only wait for this pool.
+
+    private static final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    // Class field for the tiles currently being computed, such that identical concurrent requests wait for the same computation.
+
+    private static final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheBytes = 0;
+    // Class fields for the least recently used cache of encoded tiles and its current size in bytes. Both are guarded by the cache itself.
+
+    private static PaletteRegistry palettes;
+    // Class field for the palettes of the mnd directory, loaded at startup and reloaded when their files change.
+
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        // The server listens on port 8080 unless another port is given as the argument.
+
+        if (args.length > 1) {
+            System.out.println("Error: The tile server should be called with an optional port number.");
+            System.exit(-1);
+        }
+
+        if (args.length == 1) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                System.out.println("Error: The port must be an integer.");
+                System.exit(-1);
+            }
+        }
+
+        palettes = PaletteRegistry.getShared();
+        palettes.addListener(TileServer::dropPalette);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", TileServer::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        // Every request is handled on its own virtual thread, so hundreds of waiting requests do not exhaust any platform threads.
+
+        server.start();
+        System.out.println("Serving tiles on http://localhost:" + port + "/{z}/{x}/{y}.png");
+    }
+
+    private static void handle (HttpExchange exchange) throws IOException {
+        // Handles a request on the form /{z}/{x}/{y}.png?palette=<name>&kernel=<kernel>&max=<iterations>.
+
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (!"GET".equals(exchange.getRequestMethod()) || path.length != 4 || !path[3].endsWith(".png")) {
+                respond(exchange, 404, "Not found: expected /{z}/{x}/{y}.png");
+                return;
+            }
+
+            int z, x, y, max;
+            Kernel kernel;
+            String palette = query.getOrDefault("palette", "volcano");
+
+            try {
+                z = Integer.parseInt(path[1]);
+                x = Integer.parseInt(path[2]);
+                y = Integer.parseInt(path[3].substring(0, path[3].length() - 4));
+                max = Integer.parseInt(query.getOrDefault("max", Integer.toString(Mandelbrot.MAX)));
+                kernel = Kernel.parse(query.getOrDefault("kernel", "mandelbrot"));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "Bad request: " + e.getMessage());
+                return;
+            }
+
+            if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1L << z || y >= 1L << z || max < 1 || max > MAX_ITERATIONS) {
+                respond(exchange, 400, "Bad request: tile or iteration limit out of range");
+                return;
+            }
+
+            Color[] scheme = palettes.get(palette);
+
+            if (scheme == null) {
+                respond(exchange, 404, "Unknown palette \"" + palette + "\"");
+                return;
+            }
+            // Only the names of the palettes in the registry are accepted, so the name never reaches the file system. The palette is looked up once, such that a reload during the request cannot mix two versions of it.
+
+            String key = z + "/" + x + "/" + y + "/" + palette + "/" + kernel + "/" + max;
+
+            byte[] png;
+            try {
+                png = getTile(key, z, x, y, palette, scheme, kernel, max);
+            } catch (CompletionException e) {
+                respond(exchange, 500, "Error: " + e.getCause());
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=86400");
+            exchange.sendResponseHeaders(200, png.length);
+
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(png);
+            }
+        }
+    }
+
+    private static byte[] getTile (String key, int z, int x, int y, String palette, Color[] scheme, Kernel kernel, int max) {
+        // Returns the encoded tile for < key >, from the cache if possible, otherwise by joining or starting its computation.
+
+        byte[] cached = getCached(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> future = inFlight.putIfAbsent(key, created);
+        // Only the first request for a tile registers a new future, every identical request arriving meanwhile receives the same one.
+
+        if (future == null) {
+            future = created;
+            cached = getCached(key);
+            // The cache is checked again, since the tile may have finished between the first lookup and the registration.
+
+            if (cached != null) {
+                inFlight.remove(key, created);
+                created.complete(cached);
+            } else {
+                CompletableFuture.supplyAsync(() -> renderTile(z, x, y, palettes.getColourTable(scheme, max), kernel, max), computePool).whenComplete((png, error) -> {
+                    if (error != null) {
+                        inFlight.remove(key, created);
+                        created.completeExceptionally(error);
+                        return;
+                    }
+
+                    putCached(key, png, palette, scheme);
+                    inFlight.remove(key, created);
+                    created.complete(png);
+                    // The tile is cached before it is removed from the in-flight map, so later requests always find it in one of the two.
+                });
+            }
+        }
+
+        return future.join();
+        // The virtual thread waits here without occupying a thread of the compute pool.
+    }
+
+    private static byte[] renderTile (int z, int x, int y, int[] colours, Kernel kernel, int max) {
+        // Computes and encodes the tile (x, y) at zoom level z, coloured by the colour table < colours >.
+
+        double side = ROOT_SIDELENGTH / (double) (1L << z);
+        // The sidelength of a single tile at zoom level z.
+
+        Complex center = new Complex(ROOT_CENTER.getRe() - ROOT_SIDELENGTH / 2.0 + (x + 0.5) * side, ROOT_CENTER.getIm() + ROOT_SIDELENGTH / 2.0 - (y + 0.5) * side);
+        // Tile rows are counted from the top, as in every slippy map.
+
+        View view = new View(center, side * (TILESIZE - 1) / TILESIZE, TILESIZE, kernel, max);
+        // The view spans the centres of the outermost pixels, such that neighbouring tiles do not share a row or column of pixels.
+
+        int[] iterations = view.iterate(new Tile(0, 0, TILESIZE, TILESIZE));
+
+        BufferedImage image = new BufferedImage(TILESIZE, TILESIZE, BufferedImage.TYPE_INT_RGB);
+
+        for (int i = 0; i < iterations.length; i++) {
+            iterations[i] = colours[iterations[i]];
+            // The iteration counts are replaced by their colours in place.
+        }
+
+        image.setRGB(0, 0, TILESIZE, TILESIZE, iterations, 0, TILESIZE);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try {
+            ImageIO.write(image, "png", output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte[] getCached (String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private static void putCached (String key, byte[] png, String palette, Color[] scheme) {
+        // Adds an encoded tile in the colours of < scheme > to the cache, evicting the least recently used tiles until the cache fits within CACHE_BYTES. A tile is not cached if < palette > was reloaded while it was rendered, as dropPalette() may already have run.
+
+        synchronized (cache) {
+            if (palettes.get(palette) != scheme) {
+                return;
+            }
+
+            byte[] replaced = cache.put(key, png);
+            cacheBytes += png.length - (replaced == null ? 0 : replaced.length);
+
+            Iterator<byte[]> eldest = cache.values().iterator();
+
+            while (cacheBytes > CACHE_BYTES && eldest.hasNext()) {
+                cacheBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void dropPalette (String palette) {
+        // Removes the tiles of < palette > from the cache and from the tiles in flight, called by the registry once the palette is reloaded or removed, so edited palettes are served at once.
+
+        synchronized (cache) {
+            Iterator<Map.Entry<String, byte[]>> entries = cache.entrySet().iterator();
+
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+
+                if (entry.getKey().split("/")[3].equals(palette)) {
+                    cacheBytes -= entry.getValue().length;
+                    entries.remove();
+                }
+            }
+        }
+
+        inFlight.keySet().removeIf(key -> key.split("/")[3].equals(palette));
+        // Requests arriving from now on start their own render in the new colours, while the requests already waiting receive the old ones.
+    }
+
+    private static Map<String, String> parseQuery (String query) {
+        // Splits a query string on the form a=1&b=2 into its parameters.
+
+        Map<String, String> parameters = new HashMap<>();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int split = pair.indexOf('=');
+
+            if (split > 0) {
+                parameters.put(pair.substring(0, split), URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return parameters;
+    }
+
+    private static void respond (HttpExchange exchange, int status, String message) throws IOException {
+        // Sends a plain text response with the given status code.
+
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class View {
+    private static final double MIRROR_TOLERANCE = 1e-6;
+    // Constant class field for how close, as a fraction of the pixel spacing, the mirror image of a row must land on another row for the row to be copied. Mirrors that only differ by the rounding of the coordinates are copied, while rows that land between two pixel centres are computed.
+
+    private final Complex center;
+    private final double sidelength;
+    private final int size;
+    // The center-point and sidelength of the square in the complex number plane, and the number of pixels it is split into along each side.
+
+    private final Kernel kernel;
+    private final int max;
+    // The fractal kernel to iterate and the maximum number of iterations per pixel.
+
+    private final Viewport viewport;
+    // The coordinates of the pixel rows and columns.
+
+    public View (Complex center, double sidelength, int size, Kernel kernel, int max) {
+        // Construct a view of < size > by < size > pixels of the fractal described by < kernel >.
+        this.center = center;
+        this.sidelength = sidelength;
+        this.size = size;
+        this.kernel = kernel;
+        this.max = max;
+        this.viewport = new Viewport(center, sidelength, size, size);
+    }
+
+    public Complex getCenter() {
+        return center;
+    }
+
+    public double getSidelength() {
+        return sidelength;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public double re (int x) {
+        // Returns the real coefficient of the pixel column < x >, see Viewport.re().
+        return viewport.re(x);
+    }
+
+    public double im (int y) {
+        // Returns the imaginary coefficient of the pixel row < y >. Rows are counted from the top of the image, so row 0 has the greatest imaginary coefficient.
+        return viewport.im(y);
+    }
+
+    public int iterate (int x, int y) {
+        // Returns the iteration count of the pixel (x, y).
+        return kernel.iterate(re(x), im(y), max);
+    }
+
+    public int[] iterate (Tile tile) {
+        // Returns the iteration counts of every pixel in < tile >, stored row by row from the top-left corner of the tile.
+        return iterate(tile, null);
+    }
+
+    public int[] iterate (Tile tile, int[] mirrors) {
+        // Returns the iteration counts of < tile > like iterate(Tile), except that the rows with a mirror row, see mirrors(), are skipped and left as 0.
+
+        int[] iterations = new int[tile.getWidth() * tile.getHeight()];
+        double[] res = viewport.res(tile.getX(), tile.getWidth());
+        // The real coefficients are shared by every row of the tile.
+
+        for (int y = 0; y < tile.getHeight(); y++) {
+            if (mirrors != null && mirrors[tile.getY() + y] >= 0) {
+                continue;
+            }
+
+            kernel.iterate(res, im(tile.getY() + y), max, iterations, y * tile.getWidth());
+            // The kernel iterates the whole row at once, see Kernel.iterate(double[], double, int, int[], int).
+        }
+
+        return iterations;
+    }
+
+    public int[] mirrors () {
+        // Returns, for every row of the view, the row it can be copied from by conjugate symmetry, or -1 if the row has to be computed.
+
+        return mirrors(viewport.ims(), kernel, MIRROR_TOLERANCE * sidelength / ((double) size - 1));
+    }
+
+    static int[] mirrors (double[] ims, Kernel kernel, double tolerance) {
+        // Returns, for every imaginary coefficient in < ims >, the index of the coefficient on the larger side of the real axis that is its negation to within < tolerance >, or -1 if there is none.
+        // The larger side of the view is always computed, and so is any row on the smaller side whose mirror does not land on a computed row, e.g. when the real axis falls between two pixel centres.
+
+        int[] mirrors = new int[ims.length];
+        Arrays.fill(mirrors, -1);
+
+        if (!kernel.isConjugateSymmetric()) {
+            return mirrors;
+        }
+
+        int above = 0, below = 0;
+
+        for (double im : ims) {
+            above += im > 0 ? 1 : 0;
+            below += im < 0 ? 1 : 0;
+        }
+
+        double sign = above >= below ? 1.0 : -1.0;
+        // The rows on the side of < sign > are computed, while the rows on the other side are copied where possible.
+
+        TreeMap<Double, Integer> computed = new TreeMap<>();
+
+        for (int y = 0; y < ims.length; y++) {
+            if (ims[y] * sign > 0) {
+                computed.put(ims[y], y);
+            }
+        }
+
+        for (int y = 0; y < ims.length; y++) {
+            if (ims[y] * sign < 0) {
+                Map.Entry<Double, Integer> low = computed.floorEntry(-ims[y]);
+                Map.Entry<Double, Integer> high = computed.ceilingEntry(-ims[y]);
+                // The computed rows closest to the mirror image of the row, on either side of it.
+
+                if (low != null && Math.abs(low.getKey() + ims[y]) <= tolerance) {
+                    mirrors[y] = low.getValue();
+                } else if (high != null && Math.abs(high.getKey() + ims[y]) <= tolerance) {
+                    mirrors[y] = high.getValue();
+                }
+            }
+        }
+
+        return mirrors;
+    }
+
+    public List<Tile> tiles (int tileSize) {
+        // Splits the view into square tiles of at most < tileSize > by < tileSize > pixels, ordered row by row.
+
+        List<Tile> tiles = new ArrayList<>();
+
+        for (int y = 0; y < size; y += tileSize) {
+            for (int x = 0; x < size; x += tileSize) {
+                tiles.add(new Tile(x, y, Math.min(tileSize, size - x), Math.min(tileSize, size - y)));
+            }
+        }
+
+        return tiles;
+    }
+
+    @Override
+    public String toString() {
+        // Returns the view as "re im sidelength size kernel max", which identifies the rendered result completely.
+        return center.getRe() + " " + center.getIm() + " " + sidelength + " " + size + " " + kernel + " " + max;
+    }
+}
@@ -0,0 +1,68 @@
+public class Viewport {
+    // Maps the pixels of a width by height image onto the complex number plane. The real coefficient of every column and the imaginary coefficient of every row are computed once, so finding the coordinates of a pixel is two array lookups, and setting up a view costs memory and time in proportion to width + height instead of a Complex object per pixel.
+    // Rows are counted from the top of the image, so row 0 has the greatest imaginary coefficient. The pixel spacing is the same along both axes, with < sidelength > spanning the width from the centre of the first column to the centre of the last.
+
+    private final int width, height;
+    private final double[] res, ims;
+    // The size of the image, and the real coefficient of every column and the imaginary coefficient of every row.
+
+    public Viewport (Complex center, double sidelength, int width, int height) {
+        // Construct a viewport of < width > by < height > pixels centred on < center >, whose columns span < sidelength >.
+
+        if (width < 2 || height < 2) {
+            throw new IllegalArgumentException("A viewport must be at least 2 by 2 pixels.");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.res = new double[width];
+        this.ims = new double[height];
+
+        double span = height == width ? sidelength : sidelength * (height - 1) / (width - 1);
+        // The rows span the same distance per pixel as the columns. A square viewport uses < sidelength > itself, such that its coordinates are exactly those of Mandelbrot.java before the viewport existed.
+
+        for (int x = 0; x < width; x++) {
+            res[x] = center.getRe() - sidelength / 2.0 + (sidelength * x) / ((double) width - 1);
+        }
+
+        for (int y = 0; y < height; y++) {
+            ims[y] = center.getIm() - span / 2.0 + (span * (height - 1 - y)) / ((double) height - 1);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getSpacing() {
+        // Returns the distance between the centres of two neighbouring pixels.
+        return (res[width - 1] - res[0]) / (width - 1);
+    }
+
+    public double re (int x) {
+        // Returns the real coefficient of the pixel column < x >.
+        return res[x];
+    }
+
+    public double im (int y) {
+        // Returns the imaginary coefficient of the pixel row < y >.
+        return ims[y];
+    }
+
+    public double[] res (int x, int w) {
+        // Returns a copy of the real coefficients of the < w > columns from < x >, e.g. for Kernel.iterate(double[], double, int, int[], int).
+
+        double[] copy = new double[w];
+        System.arraycopy(res, x, copy, 0, w);
+        return copy;
+    }
+
+    public double[] ims () {
+        // Returns a copy of the imaginary coefficients of every row.
+        return ims.clone();
+    }
+}